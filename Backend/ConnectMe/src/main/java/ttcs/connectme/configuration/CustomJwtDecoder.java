@@ -1,57 +1,169 @@
 package ttcs.connectme.configuration;
 
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
 import org.springframework.stereotype.Component;
-import ttcs.connectme.repository.InvalidatedTokenRepository;
+import ttcs.connectme.service.TokenRevocationIndex;
 
-import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Objects;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Verifies HS512 access tokens: each token is parsed and verified once with a shared verifier, and
+ * the resulting {@link Jwt} is cached under the token's SHA-256 until the token expires.
+ * Logout and refresh evict the cached entry through {@link #invalidate(String)}, and every lookup, cached
+ * or not, goes through the {@link TokenRevocationIndex}, so a revoked token is rejected by the next request.
+ */
 @Slf4j
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
     @Autowired
-    private InvalidatedTokenRepository invalidatedTokenRepository;
+    private TokenRevocationIndex tokenRevocationIndex;
 
-    public NimbusJwtDecoder nimbusJwtDecoder = null;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @Value("${signer_key}")
     String SIGNER_KEY;
 
+    @Value("${jwt.cache.max-size:10000}")
+    int cacheMaxSize;
+
+    private final Map<String, CachedJwt> cache = new ConcurrentHashMap<>();
+    // Bumped on every revocation; a decode that overlapped one does not cache its result
+    private final AtomicLong revocations = new AtomicLong();
+    private final MappedJwtClaimSetConverter claimSetConverter = MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+    private JWSVerifier verifier;
+
+    private Counter cacheHits;
+    private Counter cacheMisses;
+
+    @PostConstruct
+    void init() throws JOSEException {
+        verifier = new MACVerifier(SIGNER_KEY);
+        cacheHits = Counter.builder("auth.token.cache.hits")
+                .description("Requests authenticated from the verified-token cache")
+                .register(meterRegistry);
+        cacheMisses = Counter.builder("auth.token.cache.misses")
+                .description("Tokens parsed and verified")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("auth.token.cache.size", Collections.emptyList(), cache);
+    }
+
     @Override
     public Jwt decode(String token) throws JwtException {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+
+        CachedJwt cached = cache.get(key);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                // In-memory check, so revocations loaded from other instances apply to cached tokens too
+                Jwt jwt = cached.jwt();
+                if (tokenRevocationIndex.isRevoked(jwt.getId(), new Date(cached.expiresAt()))) {
+                    cache.remove(key, cached);
+                    throw new BadJwtException("Invalid token");
+                }
+                cacheHits.increment();
+                return jwt;
+            }
+            cache.remove(key, cached);
+        }
+        cacheMisses.increment();
+        long revocationsBefore = revocations.get();
+
+        Jwt jwt;
+        long expiresAt;
         try {
-            JWSVerifier verifier = new MACVerifier(SIGNER_KEY);
             SignedJWT signedJWT = SignedJWT.parse(token);
-            Date expiration = signedJWT.getJWTClaimsSet().getExpirationTime();
+            // The verifier accepts every HMAC size, only the one tokens are issued with is allowed
+            if (!JWSAlgorithm.HS512.equals(signedJWT.getHeader().getAlgorithm())) {
+                throw new BadJwtException("Invalid token");
+            }
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+            Date expiration = claims.getExpirationTime();
             boolean verified = signedJWT.verify(verifier);
-            if (!(verified && expiration.after(new Date())) ||
-                    (invalidatedTokenRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))) {
-                throw new JwtException("Invalid token");
+            if (!(verified && expiration != null && expiration.after(new Date(now))) ||
+                    tokenRevocationIndex.isRevoked(claims.getJWTID(), expiration)) {
+                throw new BadJwtException("Invalid token");
             }
+
+            expiresAt = expiration.getTime();
+            jwt = Jwt.withTokenValue(token)
+                    .headers(headers -> headers.putAll(signedJWT.getHeader().toJSONObject()))
+                    .claims(values -> values.putAll(claimSetConverter.convert(claims.getClaims())))
+                    .build();
         } catch (ParseException | JOSEException e) {
-            throw new RuntimeException(e);
+            throw new BadJwtException("Invalid token", e);
         }
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(SIGNER_KEY.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder
-                    .withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
+
+        if (revocations.get() == revocationsBefore) {
+            put(key, new CachedJwt(jwt, expiresAt));
         }
-        return nimbusJwtDecoder.decode(token);
+        return jwt;
+    }
+
+    /**
+     * Drop a token from the cache, called when it is revoked
+     */
+    public void invalidate(String token) {
+        revocations.incrementAndGet();
+        cache.remove(digest(token));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    private void put(String key, CachedJwt entry) {
+        if (cache.size() >= cacheMaxSize) {
+            evictExpired();
+            // Still full: make room with arbitrary entries, they are simply verified again
+            Iterator<String> keys = cache.keySet().iterator();
+            while (cache.size() >= cacheMaxSize && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        cache.put(key, entry);
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedJwt(Jwt jwt, long expiresAt) {
     }
 }
@@ -0,0 +1,38 @@
+package ttcs.connectme.configuration;
+
+import org.apache.activemq.artemis.api.core.RoutingType;
+import org.apache.activemq.artemis.core.settings.impl.AddressSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jms.artemis.ArtemisConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Embedded Artemis broker with a STOMP acceptor, used as the relay target
+ * when running several backend nodes on a single machine (profile "embedded-broker")
+ */
+@Configuration
+@Profile("embedded-broker")
+public class EmbeddedBrokerConfig {
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int stompPort;
+
+    @Bean
+    public ArtemisConfigurationCustomizer stompAcceptorCustomizer() {
+        return configuration -> {
+            try {
+                configuration.addAcceptorConfiguration("stomp",
+                        "tcp://0.0.0.0:" + stompPort + "?protocols=STOMP");
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot configure STOMP acceptor", e);
+            }
+            // Meeting destinations are created on first SUBSCRIBE and fan out to every subscriber
+            configuration.addAddressSetting("#", new AddressSettings()
+                    .setAutoCreateAddresses(true)
+                    .setAutoCreateQueues(true)
+                    .setDefaultAddressRoutingType(RoutingType.MULTICAST));
+        };
+    }
+}
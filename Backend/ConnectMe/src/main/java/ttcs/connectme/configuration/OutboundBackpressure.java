@@ -0,0 +1,269 @@
+package ttcs.connectme.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-session outbound queue policy for STOMP.
+ * <p>
+ * Every frame handed to the clientOutboundChannel for a session counts as queued until it has been
+ * written to the socket. Above the soft limit, droppable frames (media state, typing) are merged:
+ * only the latest frame per destination/user/media type is kept and sent once the queue drains.
+ * Signaling and chat are never dropped. A session that stays above the hard limit for longer than
+ * the eviction delay is closed; the disconnect listener then removes it from its room and sends user.left.
+ */
+@Slf4j
+@Component
+public class OutboundBackpressure implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+    private static final List<String> DROPPABLE_SUFFIXES = List.of(".media.state", ".typing");
+
+    private final Map<String, SessionState> states = new ConcurrentHashMap<>();
+    private final ObjectProvider<MessageChannel> clientOutboundChannel;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final int softLimit;
+    private final int hardLimit;
+    private final long evictAfterMillis;
+
+    private final Counter mergedCounter;
+    private final Counter evictedCounter;
+
+    public OutboundBackpressure(@Qualifier("clientOutboundChannel") ObjectProvider<MessageChannel> clientOutboundChannel,
+                                MeterRegistry meterRegistry,
+                                @Value("${websocket.outbound.soft-limit:64}") int softLimit,
+                                @Value("${websocket.outbound.hard-limit:256}") int hardLimit,
+                                @Value("${websocket.outbound.evict-after-ms:5000}") long evictAfterMillis) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.softLimit = softLimit;
+        this.hardLimit = Math.max(softLimit, hardLimit);
+        this.evictAfterMillis = evictAfterMillis;
+
+        this.mergedCounter = Counter.builder("websocket.outbound.merged")
+                .description("Droppable frames merged or dropped for sessions over their outbound budget")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("websocket.outbound.evicted")
+                .description("Sessions closed for staying over the outbound hard limit")
+                .register(meterRegistry);
+        // Aggregates only, read on scrape; a series per session would grow with every connection
+        Gauge.builder("websocket.outbound.queue.depth.max", states, OutboundBackpressure::maxDepth)
+                .description("Frames queued but not yet written for the most backed-up STOMP session")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queued", states, OutboundBackpressure::totalDepth)
+                .description("Frames queued but not yet written, over all STOMP sessions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionState state = new SessionState(session);
+                states.put(session.getId(), state);
+                super.afterConnectionEstablished(new TrackedSession(session, state));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                states.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        SessionState state = accessor.getSessionId() == null ? null : states.get(accessor.getSessionId());
+        if (state == null) {
+            return message;
+        }
+
+        int depth = state.queued.get();
+        if (depth >= softLimit && accessor.getMessageType() == SimpMessageType.MESSAGE
+                && isDroppable(accessor.getDestination())
+                && state.stash(mergeKey(accessor.getDestination(), message), message, softLimit)) {
+            mergedCounter.increment();
+            return null;
+        }
+
+        checkBudget(state, depth);
+        state.queued.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (sent && ex == null) {
+            return;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionState state = sessionId == null ? null : states.get(sessionId);
+        if (state != null) {
+            state.written();
+        }
+    }
+
+    private static double maxDepth(Map<String, SessionState> states) {
+        return states.values().stream().mapToInt(state -> state.queued.get()).max().orElse(0);
+    }
+
+    private static double totalDepth(Map<String, SessionState> states) {
+        return states.values().stream().mapToInt(state -> state.queued.get()).sum();
+    }
+
+    public int queueDepth(String sessionId) {
+        SessionState state = states.get(sessionId);
+        return state == null ? 0 : state.queued.get();
+    }
+
+    private void checkBudget(SessionState state, int depth) {
+        if (depth < hardLimit) {
+            state.overSince = 0;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (state.overSince == 0) {
+            state.overSince = now;
+        } else if (now - state.overSince >= evictAfterMillis && state.evicted.compareAndSet(false, true)) {
+            log.warn("Evicting slow WebSocket session {} ({} frames queued for {} ms)",
+                    state.session.getId(), depth, now - state.overSince);
+            evictedCounter.increment();
+            try {
+                state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Error closing session {}: {}", state.session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void drain(SessionState state) {
+        List<Message<?>> stashed = state.takeStashed();
+        if (stashed.isEmpty()) {
+            return;
+        }
+        MessageChannel channel = clientOutboundChannel.getIfAvailable();
+        if (channel == null) {
+            return;
+        }
+        for (Message<?> message : stashed) {
+            channel.send(message);
+        }
+    }
+
+    private static boolean isDroppable(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String suffix : DROPPABLE_SUFFIXES) {
+            if (destination.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Frames about the same user and media type supersede each other.
+     * Media-state deltas carry no single user, so the newest delta of a room replaces older ones;
+     * the client sees the version gap and re-reads the roster.
+     */
+    private String mergeKey(String destination, Message<?> message) {
+        if (message.getPayload() instanceof byte[] payload) {
+            try {
+                JsonNode node = objectMapper.readTree(payload);
+                return destination + "|" + node.path("userId").asText() + "|" + node.path("mediaType").asText();
+            } catch (IOException ignored) {
+            }
+        }
+        return destination;
+    }
+
+    private final class TrackedSession extends WebSocketSessionDecorator {
+        private final SessionState state;
+
+        TrackedSession(WebSocketSession session, SessionState state) {
+            super(session);
+            this.state = state;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                if (state.written() < softLimit) {
+                    drain(state);
+                }
+            }
+        }
+    }
+
+    private static final class SessionState {
+        final WebSocketSession session;
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean evicted = new AtomicBoolean();
+        final Map<String, Message<?>> stashed = new LinkedHashMap<>();
+        volatile long overSince;
+
+        SessionState(WebSocketSession session) {
+            this.session = session;
+        }
+
+        int written() {
+            return queued.updateAndGet(v -> v > 0 ? v - 1 : 0);
+        }
+
+        /**
+         * Keep the frame for the next drain if the queue is still at or over the limit.
+         * The depth is re-read under the lock {@link #takeStashed} takes after a write has lowered it,
+         * so either that drain sees the frame or the frame is not stashed and goes out directly.
+         */
+        synchronized boolean stash(String key, Message<?> message, int limit) {
+            if (queued.get() < limit) {
+                return false;
+            }
+            stashed.remove(key);
+            stashed.put(key, message);
+            return true;
+        }
+
+        synchronized List<Message<?>> takeStashed() {
+            if (stashed.isEmpty()) {
+                return List.of();
+            }
+            List<Message<?>> messages = new ArrayList<>(stashed.values());
+            stashed.clear();
+            return messages;
+        }
+    }
+}
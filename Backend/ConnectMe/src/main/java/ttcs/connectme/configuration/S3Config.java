@@ -27,13 +27,22 @@ public class S3Config {
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
 
+    @Value("${aws.s3.path-style-access:false}")
+    private boolean pathStyleAccess;
+
     @Bean
     public AmazonS3 amazonS3() {
         BasicAWSCredentials awsCredentials = new BasicAWSCredentials(accessKeyId, secretAccessKey);
 
-        return AmazonS3ClientBuilder.standard()
-                .withRegion(region)
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(awsCredentials))
-                .build();
+                .withPathStyleAccessEnabled(pathStyleAccess);
+        if (endpoint != null && !endpoint.isBlank()) {
+            // S3-compatible storage (e.g. a local MinIO); presigned URLs point at the same endpoint
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        } else {
+            builder.withRegion(region);
+        }
+        return builder.build();
     }
 }
@@ -2,6 +2,7 @@ package ttcs.connectme.configuration;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -28,17 +29,25 @@ public class SecurityConfig {
     @Autowired
     private JwtCookieFilter jwtCookieFilter;
 
+    @Value("${security.bcrypt.cost:10}")
+    private int bcryptCost;
+
     private final String[] PUBLIC_ENDPOINT_POST = { "/api/auth/**", "/api/users/**", "/api/auth/register",
             "/api/meeting/**", "/api/upload/**", "/api/users/me/**" };
     private final String[] PUBLIC_ENDPOINT_GET = { "/api/users/me/**", "/api/meetings/**",
             "/login/oauth2/code/google" };
     private final String[] PUBLIC_ENDPOINT_PUT = { "/api/users/me/**" };
+    // Under a public prefix but only for signed-in users
+    private final String[] PRIVATE_ENDPOINT_POST = { "/api/upload/async" };
+    private final String[] PRIVATE_ENDPOINT_GET = { "/api/meetings/*/chat" };
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
         httpSecurity
                 .authorizeHttpRequests(
-                        request -> request.requestMatchers(HttpMethod.POST, PUBLIC_ENDPOINT_POST).permitAll()
+                        request -> request.requestMatchers(HttpMethod.POST, PRIVATE_ENDPOINT_POST).authenticated()
+                                .requestMatchers(HttpMethod.GET, PRIVATE_ENDPOINT_GET).authenticated()
+                                .requestMatchers(HttpMethod.POST, PUBLIC_ENDPOINT_POST).permitAll()
                                 .requestMatchers(HttpMethod.GET, PUBLIC_ENDPOINT_GET).permitAll()
                                 .requestMatchers(HttpMethod.PUT, PUBLIC_ENDPOINT_PUT).permitAll()
                                 .requestMatchers("/css/**", "/js/**", "/images/**", "/ws/**", "/oauth2/**").permitAll()
@@ -65,7 +74,8 @@ public class SecurityConfig {
 
     @Bean
     PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+        // Existing hashes made with another cost are upgraded on login (see PasswordHasher)
+        return new BCryptPasswordEncoder(bcryptCost);
     }
 
     @Bean
@@ -0,0 +1,203 @@
+package ttcs.connectme.configuration;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import ttcs.connectme.service.MeetingUserService;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Authenticates STOMP sessions once, at CONNECT.
+ * The token comes from an "Authorization: Bearer" CONNECT header or from the "jwt" cookie of the
+ * handshake (copied by {@link #handshake()}, the HTTP filter chain skips /ws/**). The verified user
+ * becomes the session principal and its id a session attribute, together with the meeting the session
+ * is in, so message handlers read identity with {@link #userId} instead of trusting payloads. A meeting
+ * is only bound once the user is known to be a participant of it; until then {@link #inMeeting} is false.
+ * Subscriptions to another user's /user/{id}/... destinations are refused.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StompAuthInterceptor implements ChannelInterceptor {
+    public static final String MEETING_HEADER = "x-meeting-code";
+
+    private static final String TOKEN_COOKIE = "jwt";
+    private static final String TOKEN_ATTRIBUTE = "jwt";
+    private static final String USER_ID_ATTRIBUTE = "userId";
+    private static final String MEETING_CODE_ATTRIBUTE = "meetingCode";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String USER_PREFIX = "/user/";
+
+    private final CustomJwtDecoder customJwtDecoder;
+    private final MeetingUserService meetingUserService;
+    private final JwtAuthenticationConverter jwtAuthenticationConverter = authenticationConverter();
+
+    private final HandshakeInterceptor handshake = new HandshakeInterceptor() {
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                String token = cookie(servletRequest.getServletRequest());
+                if (token != null) {
+                    attributes.put(TOKEN_ATTRIBUTE, token);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
+    };
+
+    public HandshakeInterceptor handshake() {
+        return handshake;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            authenticate(accessor);
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            checkSubscription(accessor);
+        }
+        return message;
+    }
+
+    /**
+     * Authenticated user of the session a frame arrived on, null if there is none
+     */
+    public static Long userId(SimpMessageHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        return attributes == null ? null : (Long) attributes.get(USER_ID_ATTRIBUTE);
+    }
+
+    /**
+     * Meeting the session entered, null before it has entered one
+     */
+    public static String meetingCode(SimpMessageHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        return attributes == null ? null : (String) attributes.get(MEETING_CODE_ATTRIBUTE);
+    }
+
+    public static void bindMeeting(SimpMessageHeaderAccessor accessor, String meetingCode) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && meetingCode != null) {
+            attributes.put(MEETING_CODE_ATTRIBUTE, meetingCode);
+        }
+    }
+
+    /**
+     * Whether a frame about this meeting may be sent by the session: only the one it entered
+     */
+    public static boolean inMeeting(SimpMessageHeaderAccessor accessor, String meetingCode) {
+        return meetingCode != null && meetingCode.equals(meetingCode(accessor));
+    }
+
+    private void authenticate(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        String token = bearer(accessor.getFirstNativeHeader("Authorization"));
+        if (token == null && attributes != null) {
+            token = (String) attributes.get(TOKEN_ATTRIBUTE);
+        }
+        if (token == null || attributes == null) {
+            throw new MessageDeliveryException("Unauthenticated");
+        }
+
+        AbstractAuthenticationToken authentication;
+        try {
+            authentication = jwtAuthenticationConverter.convert(customJwtDecoder.decode(token));
+        } catch (JwtException e) {
+            log.debug("Rejected STOMP CONNECT: {}", e.getMessage());
+            throw new MessageDeliveryException("Unauthenticated");
+        }
+
+        Long userId;
+        try {
+            userId = Long.valueOf(authentication.getName());
+        } catch (NumberFormatException e) {
+            throw new MessageDeliveryException("Unauthenticated");
+        }
+
+        // The token is not needed once the session is bound
+        attributes.remove(TOKEN_ATTRIBUTE);
+        attributes.put(USER_ID_ATTRIBUTE, userId);
+        String meetingCode = accessor.getFirstNativeHeader(MEETING_HEADER);
+        if (meetingUserService.isMember(meetingCode, userId)) {
+            bindMeeting(accessor, meetingCode);
+        }
+        accessor.setUser(authentication);
+    }
+
+    private void checkSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(USER_PREFIX)) {
+            return;
+        }
+        // /user/{id}/topic/... addresses one user; /user/topic/... is resolved by Spring for the principal
+        String target = destination.substring(USER_PREFIX.length());
+        int end = target.indexOf('/');
+        target = end < 0 ? target : target.substring(0, end);
+        if (target.isEmpty() || !Character.isDigit(target.charAt(0))) {
+            return;
+        }
+        Principal user = accessor.getUser();
+        if (user == null || !target.equals(user.getName())) {
+            throw new MessageDeliveryException("Cannot subscribe to " + destination);
+        }
+    }
+
+    private static String bearer(String header) {
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        return header.substring(BEARER_PREFIX.length()).trim();
+    }
+
+    private static String cookie(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (TOKEN_COOKIE.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static JwtAuthenticationConverter authenticationConverter() {
+        // Same mapping as JwtCookieFilter, so HTTP and STOMP principals match
+        JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        authoritiesConverter.setAuthorityPrefix("ROLE_");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authoritiesConverter);
+        return converter;
+    }
+}
@@ -0,0 +1,63 @@
+package ttcs.connectme.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.Getter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Payload encodings a STOMP client can negotiate with the "x-codec" CONNECT header.
+ * JSON is the default and the fallback for every frame that does not declare a binary content-type.
+ */
+@Getter
+public enum StompCodec {
+    JSON("json", MimeTypeUtils.APPLICATION_JSON, false),
+    CBOR("cbor", new MimeType("application", "cbor"), true),
+    SMILE("smile", new MimeType("application", "x-jackson-smile"), true);
+
+    private final String id;
+    private final MimeType mimeType;
+    private final boolean binary;
+    private final ObjectMapper objectMapper;
+
+    StompCodec(String id, MimeType mimeType, boolean binary) {
+        this.id = id;
+        this.mimeType = mimeType;
+        this.binary = binary;
+        this.objectMapper = createMapper(id);
+    }
+
+    /**
+     * Converter for inbound frames sent with this codec's content-type.
+     * Strict matching keeps frames without a content-type on the JSON converter.
+     */
+    public MessageConverter messageConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(mimeType);
+        converter.setObjectMapper(objectMapper);
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    public static StompCodec fromId(String id) {
+        for (StompCodec codec : values()) {
+            if (codec.id.equalsIgnoreCase(id)) {
+                return codec;
+            }
+        }
+        return JSON;
+    }
+
+    private static ObjectMapper createMapper(String id) {
+        ObjectMapper mapper = switch (id) {
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> new ObjectMapper();
+        };
+        return mapper.registerModule(new JavaTimeModule());
+    }
+}
@@ -0,0 +1,254 @@
+package ttcs.connectme.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-session payload codec negotiation for STOMP.
+ * <p>
+ * A client picks its codec on CONNECT with the "x-codec" header, e.g. "cbor", "smile" or "json+deflate".
+ * Inbound frames are decoded by the converter matching their content-type (see {@link StompCodec}).
+ * Outbound frames are produced once as JSON by the broker and re-encoded here for sessions
+ * that asked for something else; fan-out of one payload to many sessions re-uses the last encoding.
+ * <p>
+ * With "+deflate", SDP payloads of offers/answers are raw-deflated (base64 in JSON, a byte string in
+ * binary codecs) and tagged with payloadEncoding = "deflate". Sessions without it always get plain SDP.
+ * Binary codecs must be used on the plain WebSocket endpoint (/ws/native), SockJS only carries text.
+ */
+@Slf4j
+@Component
+public class StompCodecInterceptor {
+    public static final String CODEC_HEADER = "x-codec";
+    public static final String DEFLATE = "deflate";
+
+    private static final String DEFLATE_SUFFIX = "+" + DEFLATE;
+    private static final Preference DEFAULT = new Preference(StompCodec.JSON, false);
+
+    private final Map<String, Preference> preferences = new ConcurrentHashMap<>();
+    private volatile Encoded lastEncoded;
+
+    private final ChannelInterceptor inbound = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+                Preference preference = parse(accessor.getFirstNativeHeader(CODEC_HEADER));
+                if (!DEFAULT.equals(preference)) {
+                    preferences.put(accessor.getSessionId(), preference);
+                }
+            } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
+                preferences.remove(accessor.getSessionId());
+            }
+            return message;
+        }
+    };
+
+    private final ChannelInterceptor outbound = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            return transcode(message);
+        }
+    };
+
+    public ChannelInterceptor inbound() {
+        return inbound;
+    }
+
+    public ChannelInterceptor outbound() {
+        return outbound;
+    }
+
+    public StompCodec codecOf(String sessionId) {
+        return preferences.getOrDefault(sessionId, DEFAULT).codec();
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        preferences.remove(event.getSessionId());
+    }
+
+    private Message<?> transcode(Message<?> message) {
+        if (!(message.getPayload() instanceof byte[] payload) || payload.length == 0) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        MimeType contentType = accessor.getContentType();
+        if (contentType != null && !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return message;
+        }
+
+        Preference preference = preferences.getOrDefault(accessor.getSessionId(), DEFAULT);
+        String destination = accessor.getDestination();
+        boolean signal = destination != null && destination.endsWith(".signal");
+        if (DEFAULT.equals(preference) && !(signal && containsDeflated(payload))) {
+            return message;
+        }
+
+        byte[] encoded = encode(payload, preference, signal);
+        if (encoded == payload) {
+            return message;
+        }
+
+        StompCodec codec = preference.codec();
+        // Spring only sends BinaryMessage frames for application/octet-stream, the real codec goes in x-codec
+        accessor.setContentType(codec.isBinary() ? MimeTypeUtils.APPLICATION_OCTET_STREAM : codec.getMimeType());
+        accessor.setNativeHeader(CODEC_HEADER, preference.id());
+        return MessageBuilder.createMessage(encoded, accessor.getMessageHeaders());
+    }
+
+    private byte[] encode(byte[] payload, Preference preference, boolean signal) {
+        Encoded last = lastEncoded;
+        if (last != null && last.source() == payload && last.preference().equals(preference)) {
+            return last.result();
+        }
+
+        byte[] result;
+        try {
+            JsonNode tree = StompCodec.JSON.getObjectMapper().readTree(payload);
+            boolean changed = signal && rewriteSignalPayload(tree, preference);
+            if (preference.codec() == StompCodec.JSON && !changed) {
+                result = payload;
+            } else {
+                result = preference.codec().getObjectMapper().writeValueAsBytes(tree);
+            }
+        } catch (Exception e) {
+            log.warn("Cannot transcode STOMP payload to {}: {}", preference.id(), e.getMessage());
+            result = payload;
+        }
+
+        lastEncoded = new Encoded(payload, preference, result);
+        return result;
+    }
+
+    /**
+     * Deflate or inflate the SDP of an offer/answer to match what the receiving session negotiated
+     */
+    private boolean rewriteSignalPayload(JsonNode tree, Preference preference) throws DataFormatException {
+        if (!(tree instanceof ObjectNode signal) || !signal.path("payload").isTextual()) {
+            return false;
+        }
+        String type = signal.path("type").asText();
+        if (!"offer".equals(type) && !"answer".equals(type)) {
+            return false;
+        }
+
+        boolean deflated = DEFLATE.equals(signal.path("payloadEncoding").asText(null));
+        String payload = signal.get("payload").asText();
+
+        if (preference.deflate() && !deflated) {
+            byte[] compressed = deflate(payload.getBytes(StandardCharsets.UTF_8));
+            if (preference.codec().isBinary()) {
+                signal.put("payload", compressed);
+            } else {
+                signal.put("payload", Base64.getEncoder().encodeToString(compressed));
+            }
+            signal.put("payloadEncoding", DEFLATE);
+            return true;
+        }
+        if (preference.deflate() && preference.codec().isBinary()) {
+            signal.put("payload", Base64.getDecoder().decode(payload));
+            return true;
+        }
+        if (!preference.deflate() && deflated) {
+            byte[] inflated = inflate(Base64.getDecoder().decode(payload));
+            signal.put("payload", new String(inflated, StandardCharsets.UTF_8));
+            signal.putNull("payloadEncoding");
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean containsDeflated(byte[] payload) {
+        // Cheap pre-check before parsing: only frames tagged as deflated need inflating for JSON clients
+        String text = new String(payload, StandardCharsets.UTF_8);
+        return text.contains("\"payloadEncoding\":\"" + DEFLATE + "\"");
+    }
+
+    static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[2048];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate client-supplied data, refusing anything that expands past the STOMP message size limit
+     */
+    static byte[] inflate(byte[] input) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(input.length * 3, WebSocketConfig.MESSAGE_SIZE_LIMIT));
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                if (out.size() + n > WebSocketConfig.MESSAGE_SIZE_LIMIT) {
+                    throw new DataFormatException("Inflated payload exceeds " + WebSocketConfig.MESSAGE_SIZE_LIMIT + " bytes");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Preference parse(String header) {
+        if (header == null || header.isBlank()) {
+            return DEFAULT;
+        }
+        String value = header.trim().toLowerCase();
+        boolean deflate = value.endsWith(DEFLATE_SUFFIX);
+        if (deflate) {
+            value = value.substring(0, value.length() - DEFLATE_SUFFIX.length());
+        }
+        return new Preference(StompCodec.fromId(value), deflate);
+    }
+
+    private record Preference(StompCodec codec, boolean deflate) {
+        String id() {
+            return deflate ? codec.getId() + DEFLATE_SUFFIX : codec.getId();
+        }
+    }
+
+    private record Encoded(byte[] source, Preference preference, byte[] result) {
+    }
+}
@@ -0,0 +1,55 @@
+package ttcs.connectme.configuration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Streaming responses (file downloads) are written on their own executor, so slow clients holding a
+ * download open cannot take the application task executor used by @Async work. The executor is not a
+ * bean: declaring one would replace Spring Boot's default applicationTaskExecutor.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+    private final AsyncTaskExecutor executor;
+    private final long timeoutMillis;
+
+    public WebMvcConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                        @Value("${web.async.threads:32}") int threads,
+                        @Value("${web.async.queue-capacity:64}") int queueCapacity,
+                        @Value("${web.async.timeout-ms:1800000}") long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("mvc-async-");
+            virtual.setVirtualThreads(true);
+            virtual.setConcurrencyLimit(threads + queueCapacity);
+            this.executor = virtual;
+        } else {
+            ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(threads);
+            pool.setMaxPoolSize(threads);
+            pool.setQueueCapacity(Math.max(0, queueCapacity));
+            pool.setThreadNamePrefix("mvc-async-");
+            pool.initialize();
+            this.executor = pool;
+        }
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+    }
+}
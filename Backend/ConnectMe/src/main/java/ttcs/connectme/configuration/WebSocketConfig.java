@@ -1,21 +1,99 @@
 package ttcs.connectme.configuration;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import ttcs.connectme.service.PresenceEngine;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    // Largest inbound STOMP message, also the bound on payloads inflated from client data
+    static final int MESSAGE_SIZE_LIMIT = 512 * 1024;
+
+    @Autowired
+    private StompAuthInterceptor stompAuthInterceptor;
+
+    @Autowired
+    private StompCodecInterceptor stompCodecInterceptor;
+
+    @Autowired
+    private OutboundBackpressure outboundBackpressure;
+
+    @Autowired
+    private PresenceEngine presenceEngine;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${websocket.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("http://localhost:3000", "https://hoangotech.id.vn")
+                .addInterceptors(stompAuthInterceptor.handshake())
                 .withSockJS();
+
+        // Plain WebSocket endpoint for clients that negotiate a binary codec (SockJS only carries text)
+        registry.addEndpoint("/ws/native")
+                .setAllowedOriginPatterns("http://localhost:3000", "https://hoangotech.id.vn")
+                .addInterceptors(stompAuthInterceptor.handshake());
+
+        // Virtual-thread executors are unbounded, keep each session's inbound frames in order
+        registry.setPreserveReceiveOrder(virtualThreads);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Binary codecs only apply to frames that declare their content-type, JSON stays the default
+        messageConverters.add(StompCodec.CBOR.messageConverter());
+        messageConverters.add(StompCodec.SMILE.messageConverter());
+        return true;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authentication first: nothing else sees a CONNECT that is about to be refused
+        registration.interceptors(stompAuthInterceptor, presenceEngine, stompCodecInterceptor.inbound());
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Budget check runs first so merged frames are still plain JSON when they are re-sent
+        registration.interceptors(outboundBackpressure, stompCodecInterceptor.outbound());
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("ws-outbound-"));
+        }
     }
 
     @Override
@@ -23,17 +101,39 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Set prefix for endpoints the client will send messages to
         registry.setApplicationDestinationPrefixes("/app");
 
-        // Enable simple broker for topic destinations
-        // Messages with these prefixes will be routed to the message broker
-        registry.enableSimpleBroker("/topic", "/user")
-                .setHeartbeatValue(new long[] { 10000, 10000 })
-                .setTaskScheduler(new org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler() {
-                    {
-                        setPoolSize(2);
-                        setThreadNamePrefix("ws-heartbeat-");
-                        initialize();
-                    }
-                });
+        // Keep per-session publish order when outbound messages run on virtual threads
+        registry.setPreservePublishOrder(virtualThreads);
+
+        if (relayEnabled) {
+            // Relay /topic and /user destinations to an external STOMP broker so that
+            // participants of the same meeting can be connected to different backend nodes
+            var relay = registry.enableStompBrokerRelay("/topic", "/user")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(10000)
+                    .setSystemHeartbeatReceiveInterval(10000)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            // Enable simple broker for topic destinations
+            // Messages with these prefixes will be routed to the message broker
+            registry.enableSimpleBroker("/topic", "/user")
+                    .setHeartbeatValue(new long[] { 10000, 10000 })
+                    .setTaskScheduler(new org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler() {
+                        {
+                            setPoolSize(2);
+                            setThreadNamePrefix("ws-heartbeat-");
+                            initialize();
+                        }
+                    });
+        }
 
         // Set prefix for user-specific destinations
         registry.setUserDestinationPrefix("/user");
@@ -44,6 +144,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registration.setMessageSizeLimit(8192 * 8)
                 .setSendBufferSizeLimit(512 * 1024)
                 .setSendTimeLimit(20 * 1000)
-                .setMessageSizeLimit(512 * 1024);
+                .setMessageSizeLimit(MESSAGE_SIZE_LIMIT)
+                .addDecoratorFactory(outboundBackpressure);
+    }
+
+    private SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
     }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -23,12 +25,15 @@ import ttcs.connectme.entity.UserEntity;
 import ttcs.connectme.enums.ErrorCode;
 import ttcs.connectme.exception.AppException;
 import ttcs.connectme.repository.UserRepository;
+import ttcs.connectme.service.AuthRateLimiter;
 import ttcs.connectme.service.AuthService;
+import ttcs.connectme.service.OtpStore;
 import ttcs.connectme.service.SendEmailService;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -37,18 +42,22 @@ import java.util.Map;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AuthController {
     AuthService authService;
+    AuthRateLimiter authRateLimiter;
+    OtpStore otpStore;
     SendEmailService sendEmailService;
     UserRepository userRepository;
 
     @PostMapping("/register")
-    public ResponseEntity<ApiResponse<UserResponse>> register(@Valid @RequestBody UserCreateRequest request) {
-        ApiResponse<UserResponse> response = ApiResponse.<UserResponse>builder()
-                .code(0)
-                .message("Register successfully")
-                .result(authService.register(request))
-                .build();
-
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<ApiResponse<UserResponse>>> register(
+            @Valid @RequestBody UserCreateRequest request, HttpServletRequest httpServletRequest) {
+        authRateLimiter.checkRegister(httpServletRequest.getRemoteAddr(), request.getEmail());
+        // Password hashing runs off the request thread, which is released until it completes
+        return authService.register(request).thenApply(user -> ResponseEntity.ok(
+                ApiResponse.<UserResponse>builder()
+                        .code(0)
+                        .message("Register successfully")
+                        .result(user)
+                        .build()));
     }
 
     @GetMapping("/google-login")
@@ -107,25 +116,28 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<ApiResponse<LoginResponse>> authenticate(
-            @RequestBody LoginRequest request,
-            HttpServletResponse httpServletResponse) {
-        LoginResponse loginResponse = authService.authenticate(request);
-
-        Cookie cookie = new Cookie("jwt", loginResponse.getToken());
-        cookie.setHttpOnly(true);
-        cookie.setSecure(false);
-        cookie.setPath("/");
-        cookie.setMaxAge(86400);
-        httpServletResponse.addCookie(cookie);
+    public CompletableFuture<ResponseEntity<ApiResponse<LoginResponse>>> authenticate(
+            @RequestBody LoginRequest request, HttpServletRequest httpServletRequest) {
+        authRateLimiter.checkLogin(httpServletRequest.getRemoteAddr(), request.getUsername());
+        // Password check runs off the request thread; the cookie goes out with the response entity
+        return authService.authenticate(request).thenApply(loginResponse -> {
+            ResponseCookie cookie = ResponseCookie.from("jwt", loginResponse.getToken())
+                    .httpOnly(true)
+                    .secure(false)
+                    .path("/")
+                    .maxAge(86400)
+                    .build();
 
-        ApiResponse<LoginResponse> response = ApiResponse.<LoginResponse>builder()
-                .code(0)
-                .message("Login successfully")
-                .result(loginResponse)
-                .build();
+            ApiResponse<LoginResponse> response = ApiResponse.<LoginResponse>builder()
+                    .code(0)
+                    .message("Login successfully")
+                    .result(loginResponse)
+                    .build();
 
-        return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                    .body(response);
+        });
     }
 
     @PostMapping("/logout")
@@ -166,13 +178,31 @@ public class AuthController {
     }
 
     @PostMapping("/sendOTP")
-    public String sendOTP(@Valid @RequestBody SendOtpRequest request) {
+    public ApiResponse<Void> sendOTP(@Valid @RequestBody SendOtpRequest request,
+                                     HttpServletRequest httpServletRequest) {
+        authRateLimiter.checkOtp(httpServletRequest.getRemoteAddr(), request.getEmail());
         try {
-            return sendEmailService.sendOTP(request.getEmail());
+            sendEmailService.sendOTP(request.getEmail());
         } catch (Exception e) {
             log.error(String.valueOf(e));
-            return "Error sending OTP";
+            throw new AppException(ErrorCode.SEND_OTP_ERROR);
         }
+        return ApiResponse.<Void>builder()
+                .message("OTP sent")
+                .build();
+    }
+
+    /**
+     * Check a code before asking for the new password; it stays valid for forgot-password
+     */
+    @PostMapping("/verifyOTP")
+    public ApiResponse<Void> verifyOTP(@Valid @RequestBody VerifyOtpRequest request) {
+        if (!otpStore.verify(request.getEmail(), request.getOtp()))
+            throw new AppException(ErrorCode.INVALID_OTP);
+
+        return ApiResponse.<Void>builder()
+                .message("OTP verified")
+                .build();
     }
 
     private void clearJSessionId(HttpServletResponse response) {
@@ -0,0 +1,38 @@
+package ttcs.connectme.controller;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import ttcs.connectme.dto.response.ApiResponse;
+import ttcs.connectme.dto.response.ChatHistoryResponse;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.service.ChatHistoryService;
+import ttcs.connectme.service.MeetingUserService;
+
+@RestController
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequestMapping("/api")
+public class ChatController {
+    ChatHistoryService chatHistoryService;
+    MeetingUserService meetingUserService;
+
+    /**
+     * Chat history of a meeting, newest page first, for its participants only.
+     * Follow nextCursor with ?before= to go further back.
+     */
+    @GetMapping(value = "/meetings/{meetingCode}/chat")
+    public ApiResponse<ChatHistoryResponse> getChatHistory(@PathVariable("meetingCode") String meetingCode,
+                                                           @RequestParam(value = "before", required = false) String before,
+                                                           Authentication auth) {
+        if (!meetingUserService.isMember(meetingCode, Long.parseLong(auth.getName()))) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+        return ApiResponse.<ChatHistoryResponse>builder()
+                .result(before == null ? chatHistoryService.recent(meetingCode) : chatHistoryService.page(meetingCode, before))
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package ttcs.connectme.controller;
+
+import jakarta.validation.Valid;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ttcs.connectme.dto.request.FileShareByHashRequest;
+import ttcs.connectme.dto.request.FileUploadCompleteRequest;
+import ttcs.connectme.dto.request.FileUploadIntentRequest;
+import ttcs.connectme.dto.response.ApiResponse;
+import ttcs.connectme.dto.response.FileUploadIntentResponse;
+import ttcs.connectme.dto.webrtc.FileSharedNotification;
+import ttcs.connectme.service.FileDownloadService;
+import ttcs.connectme.service.FileShareService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/files")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FileController {
+    FileShareService fileShareService;
+    FileDownloadService fileDownloadService;
+
+    /**
+     * Presigned PUT for uploading a meeting file straight to storage
+     */
+    @PostMapping("/upload-intent")
+    public ApiResponse<FileUploadIntentResponse> createUploadIntent(@Valid @RequestBody FileUploadIntentRequest request,
+                                                                    Authentication auth) {
+        return ApiResponse.<FileUploadIntentResponse>builder()
+                .result(fileShareService.createIntent(request, Long.parseLong(auth.getName())))
+                .build();
+    }
+
+    /**
+     * Called by the uploader once the PUT succeeded; records the file and notifies the meeting
+     */
+    @PostMapping("/complete")
+    public ApiResponse<FileSharedNotification> completeUpload(@Valid @RequestBody FileUploadCompleteRequest request,
+                                                              Authentication auth) {
+        return ApiResponse.<FileSharedNotification>builder()
+                .message("File shared successfully")
+                .result(fileShareService.complete(request, Long.parseLong(auth.getName())))
+                .build();
+    }
+
+    /**
+     * Share already stored content by its SHA-256; a 404 means the file has to be uploaded
+     */
+    @PostMapping("/share-by-hash")
+    public ApiResponse<FileSharedNotification> shareByHash(@Valid @RequestBody FileShareByHashRequest request,
+                                                           Authentication auth) {
+        return ApiResponse.<FileSharedNotification>builder()
+                .message("File shared successfully")
+                .result(fileShareService.shareByHash(request, Long.parseLong(auth.getName())))
+                .build();
+    }
+
+    @DeleteMapping("/{fileId}")
+    public ApiResponse<Void> deleteFile(@PathVariable Long fileId, Authentication auth) {
+        fileShareService.delete(fileId, Long.parseLong(auth.getName()));
+        return ApiResponse.<Void>builder()
+                .message("File deleted successfully")
+                .build();
+    }
+
+    /**
+     * Stream a meeting file. Supports a single byte range (206), If-Range, and ETag/Last-Modified
+     * conditional requests (304/412); multi-range requests get the whole file.
+     */
+    @GetMapping("/{fileId}")
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable Long fileId, ServletWebRequest request) {
+        FileDownloadService.Download download = fileDownloadService.describe(fileId);
+        if (request.checkNotModified(download.etag(), download.lastModified())) {
+            // 304 or 412 and validators have been written to the response
+            return null;
+        }
+
+        long size = download.size();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(MediaType.parseMediaType(download.contentType()));
+        headers.setContentDisposition(ContentDisposition.inline()
+                .filename(download.fileName(), StandardCharsets.UTF_8)
+                .build());
+
+        HttpRange range = requestedRange(request, download);
+        if (range == null || size == 0) {
+            headers.setContentLength(size);
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(out -> {
+                        if (size > 0) {
+                            fileDownloadService.stream(download, 0, size - 1, out);
+                        }
+                    });
+        }
+
+        long start;
+        long end;
+        try {
+            start = range.getRangeStart(size);
+            end = range.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+        headers.setContentLength(end - start + 1);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(out -> fileDownloadService.stream(download, start, end, out));
+    }
+
+    /**
+     * The single range to serve, or null for the whole file (no, malformed, multiple or stale ranges)
+     */
+    private static HttpRange requestedRange(ServletWebRequest request, FileDownloadService.Download download) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), download)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(String ifRange, FileDownloadService.Download download) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return ifRange.equals(download.etag());
+        }
+        try {
+            long since = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return download.lastModified() >= 0 && download.lastModified() / 1000 == since / 1000;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
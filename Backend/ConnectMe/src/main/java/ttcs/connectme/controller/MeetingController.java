@@ -2,12 +2,14 @@ package ttcs.connectme.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import ttcs.connectme.dto.request.MeetingRequest;
 import ttcs.connectme.dto.request.MeetingUserRequest;
 import ttcs.connectme.dto.response.ApiResponse;
 import ttcs.connectme.dto.response.MeetingResponse;
 import ttcs.connectme.dto.response.MeetingUserResponse;
+import ttcs.connectme.dto.response.RoomSnapshotResponse;
 import ttcs.connectme.entity.MeetingEntity;
 import ttcs.connectme.enums.ErrorCode;
 import ttcs.connectme.exception.AppException;
@@ -15,6 +17,7 @@ import ttcs.connectme.repository.MeetingRepository;
 import ttcs.connectme.service.GoogleCalendarService;
 import ttcs.connectme.service.MeetingService;
 import ttcs.connectme.service.MeetingUserService;
+import ttcs.connectme.service.RoomSnapshotService;
 import ttcs.connectme.service.SendEmailService;
 
 import java.util.List;
@@ -29,6 +32,7 @@ public class MeetingController {
     private final MeetingRepository meetingRepository;
     private final SendEmailService sendEmailService;
     private final GoogleCalendarService googleCalendarService;
+    private final RoomSnapshotService roomSnapshotService;
 
         @PostMapping("/meetings")
         public ApiResponse<MeetingResponse> createMeeting(@Valid @RequestBody MeetingRequest meetingRequest) {
@@ -99,6 +103,21 @@ public class MeetingController {
         }
     }
 
+    /**
+     * Join the meeting as the calling user and return meeting, roster with media flags and room version
+     * in one response
+     */
+    @PostMapping("/meetings/{meetingCode}/enter")
+    public ApiResponse<RoomSnapshotResponse> enterMeeting(
+            @PathVariable String meetingCode,
+            Authentication auth) {
+        return ApiResponse.<RoomSnapshotResponse>builder()
+                .code(200)
+                .message("Successfully entered the meeting")
+                .result(roomSnapshotService.enter(meetingCode, Long.parseLong(auth.getName()), null))
+                .build();
+    }
+
     @PostMapping("/meetings/{meetingCode}/leave/{userId}")
     public ApiResponse<Void> leaveMeeting(
             @PathVariable String meetingCode,
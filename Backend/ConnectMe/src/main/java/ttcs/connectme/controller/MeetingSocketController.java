@@ -1,19 +1,37 @@
 package ttcs.connectme.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
-import ttcs.connectme.dto.request.MeetingUserRequest;
+import ttcs.connectme.configuration.StompAuthInterceptor;
+import ttcs.connectme.dto.response.RoomSnapshotResponse;
 import ttcs.connectme.dto.webrtc.*;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.service.ChatHistoryService;
+import ttcs.connectme.service.ChatWriteBehindService;
+import ttcs.connectme.service.FileTransferRelay;
+import ttcs.connectme.service.IceCandidateBatcher;
+import ttcs.connectme.service.MediaStateCoalescer;
 import ttcs.connectme.service.MeetingService;
 import ttcs.connectme.service.MeetingUserService;
+import ttcs.connectme.service.RoomRegistry;
+import ttcs.connectme.service.RoomSnapshotService;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * STOMP handlers of a meeting. The sender is always the user the session authenticated as at CONNECT
+ * (see {@link StompAuthInterceptor}); ids in payloads are overwritten, and frames for a meeting other
+ * than the one the session entered are dropped.
+ */
 @Controller
 public class MeetingSocketController {
     @Autowired
@@ -22,44 +40,94 @@ public class MeetingSocketController {
     @Autowired
     private MeetingUserService meetingUserService;
 
+    @Autowired
+    private RoomRegistry roomRegistry;
+
+    @Autowired
+    private IceCandidateBatcher iceCandidateBatcher;
+
+    @Autowired
+    private MediaStateCoalescer mediaStateCoalescer;
+
+    @Autowired
+    private RoomSnapshotService roomSnapshotService;
+
+    @Autowired
+    private ChatWriteBehindService chatWriteBehindService;
+
+    @Autowired
+    private ChatHistoryService chatHistoryService;
+
+    @Autowired
+    private FileTransferRelay fileTransferRelay;
+
     /**
      * Handle user joining a meeting
      */
     @MessageMapping("/meeting.join")
-    public void joinMeeting(@Payload JoinMeetingRequest request) {
-        Long userId = null;
-        try {
-            userId = request.getUserId();
-            if (userId == null) {
-                throw new IllegalArgumentException("userId cannot be null");
-            }
-        } catch (Exception e) {
-            sendErrorToUser(request.getUserId() != null ? request.getUserId().toString() : "unknown",
-                    request.getMeetingCode(),
-                    "ERROR: userId format invalid - " + e.getMessage());
+    public void joinMeeting(@Payload JoinMeetingRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || request.getMeetingCode() == null) {
             return;
         }
+        // Joining announces an existing participant; entering is what adds one
+        if (!meetingUserService.isMember(request.getMeetingCode(), userId)) {
+            sendErrorToUser(userId.toString(), request.getMeetingCode(), "ERROR: not a participant");
+            return;
+        }
+        StompAuthInterceptor.bindMeeting(headerAccessor, request.getMeetingCode());
+        // Back from a presence timeout
+        meetingUserService.markOnline(request.getMeetingCode(), userId);
+
+        roomRegistry.join(request.getMeetingCode(), userId, headerAccessor.getSessionId());
 
         messagingTemplate.convertAndSend(
                 "/topic/meeting." + request.getMeetingCode() + ".user.joined",
                 new UserJoinedEvent(userId, request.getMeetingCode()));
     }
 
+    /**
+     * Handle user entering a meeting: join, then reply with the room snapshot on
+     * /user/{userId}/topic/meeting.{code}.enter
+     */
+    @MessageMapping("/meeting.enter")
+    public void enterMeeting(@Payload JoinMeetingRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Long sessionUserId = StompAuthInterceptor.userId(headerAccessor);
+        if (sessionUserId == null || request.getMeetingCode() == null) {
+            return;
+        }
+        String userId = sessionUserId.toString();
+
+        RoomSnapshotResponse snapshot;
+        try {
+            snapshot = roomSnapshotService.enter(request.getMeetingCode(), sessionUserId,
+                    headerAccessor.getSessionId());
+        } catch (AppException e) {
+            sendErrorToUser(userId, request.getMeetingCode(), "ERROR: " + e.getMessage());
+            return;
+        }
+        StompAuthInterceptor.bindMeeting(headerAccessor, request.getMeetingCode());
+
+        messagingTemplate.convertAndSendToUser(userId,
+                "/topic/meeting." + request.getMeetingCode() + ".enter",
+                snapshot);
+        messagingTemplate.convertAndSend(
+                "/topic/meeting." + request.getMeetingCode() + ".user.joined",
+                new UserJoinedEvent(sessionUserId, request.getMeetingCode()));
+    }
+
     /**
      * Handle user leaving a meeting
      */
     @MessageMapping("/meeting.leave")
-    public void leaveMeeting(@Payload LeaveMeetingRequest request) {
-        Long userId = null;
-        try {
-            userId = request.getUserId();
-            if (userId == null) {
-                throw new IllegalArgumentException("userId cannot be null");
-            }
-        } catch (Exception e) {
+    public void leaveMeeting(@Payload LeaveMeetingRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || request.getMeetingCode() == null) {
             return;
         }
 
+        roomRegistry.leave(request.getMeetingCode(), userId);
+
         // Broadcast to all participants that a user left
         messagingTemplate.convertAndSend(
                 "/topic/meeting." + request.getMeetingCode() + ".user.left",
@@ -70,11 +138,23 @@ public class MeetingSocketController {
      * Handle WebRTC signaling (offers, answers, ICE candidates)
      */
     @MessageMapping("/meeting.signal")
-    public void signal(@Payload SignalRequest request) {
-        if (request.getTargetUserId() == null) {
+    public void signal(@Payload SignalRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || request.getTargetUserId() == null
+                || !StompAuthInterceptor.inMeeting(headerAccessor, request.getMeetingCode())) {
             return;
         }
+        request.setFrom(userId.toString());
+        // Rebind the sender's current session in the room registry (e.g. after a STOMP reconnect)
+        roomRegistry.touch(request.getMeetingCode(), userId, headerAccessor.getSessionId());
         try {
+            // ICE candidates are coalesced; offers and answers flush pending candidates and go out immediately
+            if (IceCandidateBatcher.ICE_CANDIDATE.equals(request.getType())) {
+                iceCandidateBatcher.submit(request);
+                return;
+            }
+            iceCandidateBatcher.flush(request);
+
             messagingTemplate.convertAndSendToUser(
                     request.getTargetUserId(),
                     "/topic/meeting." + request.getMeetingCode() + ".signal",
@@ -90,29 +170,86 @@ public class MeetingSocketController {
      * Handle chat messages
      */
     @MessageMapping("/meeting.chat")
-    public void sendChatMessage(@Payload ChatMessage message) {
+    public void sendChatMessage(@Payload ChatMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || !StompAuthInterceptor.inMeeting(headerAccessor, message.getMeetingCode())) {
+            return;
+        }
+        message.setSenderId(userId);
+
         // Broadcast the chat message to all participants
         messagingTemplate.convertAndSend(
                 "/topic/meeting." + message.getMeetingCode() + ".chat",
                 message);
+
+        // Kept for late joiners and persisted asynchronously, the broadcast never waits for the database
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        chatHistoryService.record(message, sentAt);
+        chatWriteBehindService.enqueue(message, sentAt);
     }
 
     /**
      * Handle file transfers
      */
     @MessageMapping("/meeting.file")
-    public void sendFile(@Payload FileTransfer file) {
-        // Broadcast the file to all participants
+    public void sendFile(@Payload FileTransfer file, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || !StompAuthInterceptor.inMeeting(headerAccessor, file.getMeetingCode())) {
+            return;
+        }
+        file.setSenderId(userId);
+
+        if (file.getFileData() == null) {
+            // Chunked transfer: register the offer and let participants accept it
+            file = fileTransferRelay.offer(file, headerAccessor.getSessionId());
+            if (file == null) {
+                return;
+            }
+        }
+
+        // Broadcast the file (or the offer) to all participants
         messagingTemplate.convertAndSend(
                 "/topic/meeting." + file.getMeetingCode() + ".file",
                 file);
     }
 
+    /**
+     * Handle one binary chunk of a chunked file transfer
+     */
+    @MessageMapping("/meeting.file.chunk")
+    public void sendFileChunk(@Payload byte[] chunk,
+                              @Header(FileTransferRelay.TRANSFER_ID_HEADER) String transferId,
+                              @Header(FileTransferRelay.SEQ_HEADER) int seq,
+                              SimpMessageHeaderAccessor headerAccessor) {
+        fileTransferRelay.chunk(transferId, seq, chunk, headerAccessor.getSessionId());
+    }
+
+    /**
+     * Handle accept/credit/cancel frames of a chunked file transfer, from sessions in the transfer's meeting
+     */
+    @MessageMapping("/meeting.file.control")
+    public void controlFileTransfer(@Payload FileTransferControl control, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        // The meeting comes from the transfer, never from the frame
+        if (userId == null || !StompAuthInterceptor.inMeeting(headerAccessor,
+                fileTransferRelay.meetingCode(control.getTransferId()))) {
+            return;
+        }
+        control.setUserId(userId);
+        fileTransferRelay.control(control, headerAccessor.getSessionId());
+    }
+
     /**
      * Handle notification for files shared via REST API (for large files)
      */
     @MessageMapping("/meeting.file.shared")
-    public void handleFileShared(@Payload FileSharedNotification file) {
+    public void handleFileShared(@Payload FileSharedNotification file, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || !StompAuthInterceptor.inMeeting(headerAccessor, file.getMeetingCode())) {
+            return;
+        }
+        file.setSenderId(userId);
+
         // Broadcast the file shared notification to all participants in the specific
         messagingTemplate.convertAndSend(
                 "/topic/meeting." + file.getMeetingCode() + ".file.shared",
@@ -123,12 +260,29 @@ public class MeetingSocketController {
      * Handle audio/video state changes
      */
     @MessageMapping("/meeting.media.state")
-    public void updateMediaState(@Payload MediaStateUpdate update) {
-        // Broadcast the media state change to all participants
+    public void updateMediaState(@Payload MediaStateUpdate update, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthInterceptor.userId(headerAccessor);
+        if (userId == null || update.getMediaType() == null
+                || !StompAuthInterceptor.inMeeting(headerAccessor, update.getMeetingCode())) {
+            return;
+        }
+        update.setUserId(userId);
+        int flag = mediaFlag(update.getMediaType());
+        if (flag == 0) {
+            return;
+        }
 
-        messagingTemplate.convertAndSend(
-                "/topic/meeting." + update.getMeetingCode() + ".media.state",
-                update);
+        // Updates are coalesced per room and broadcast as a versioned delta
+        mediaStateCoalescer.submit(update, flag);
+    }
+
+    private int mediaFlag(String mediaType) {
+        return switch (mediaType) {
+            case "audio" -> RoomRegistry.AUDIO;
+            case "video" -> RoomRegistry.VIDEO;
+            case "screen" -> RoomRegistry.SCREEN;
+            default -> 0;
+        };
     }
 
     /**
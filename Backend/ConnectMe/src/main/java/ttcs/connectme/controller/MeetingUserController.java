@@ -7,7 +7,9 @@ import org.springframework.web.bind.annotation.*;
 import ttcs.connectme.dto.request.MeetingUserRequest;
 import ttcs.connectme.dto.response.ApiResponse;
 import ttcs.connectme.dto.response.MeetingUserResponse;
+import ttcs.connectme.dto.webrtc.ParticipantState;
 import ttcs.connectme.service.MeetingUserService;
+import ttcs.connectme.service.RoomRegistry;
 
 import java.util.List;
 
@@ -17,6 +19,7 @@ import java.util.List;
 @RequestMapping("/api")
 public class MeetingUserController {
     MeetingUserService meetingUserService;
+    RoomRegistry roomRegistry;
 
     @PostMapping(value = "/meetings/{meetingCode}/users/{userId}")
     public ApiResponse<MeetingUserResponse> addUser (@RequestBody MeetingUserRequest request, @PathVariable("meetingCode") String meetingCode, @PathVariable("userId") Long userId) {
@@ -50,4 +53,11 @@ public class MeetingUserController {
                 .result(meetingUserService.getAllByMeetingId(meetingCode))
                 .build();
     }
+
+    @GetMapping(value = "/meetings/{meetingCode}/online")
+    public ApiResponse<List<ParticipantState>> getOnlineParticipants (@PathVariable("meetingCode") String meetingCode) {
+        return ApiResponse.<List<ParticipantState>>builder()
+                .result(roomRegistry.roster(meetingCode))
+                .build();
+    }
 }
@@ -3,10 +3,13 @@ package ttcs.connectme.controller;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ttcs.connectme.dto.response.ApiResponse;
+import ttcs.connectme.dto.response.UploadJobResponse;
 import ttcs.connectme.enums.ErrorCode;
 import ttcs.connectme.exception.AppException;
 import ttcs.connectme.service.S3Service;
@@ -35,10 +38,33 @@ public class UploadController {
         }
     }
 
+    /**
+     * Stage the file and upload it in the background; poll the returned job or listen on
+     * /user/topic/upload.jobs
+     */
+    @PostMapping("/async")
+    public ResponseEntity<ApiResponse<UploadJobResponse>> uploadAsync(@RequestParam("file") MultipartFile file,
+                                                                      Authentication auth) {
+        ApiResponse<UploadJobResponse> response = ApiResponse.<UploadJobResponse>builder()
+                .message("Upload accepted")
+                .result(uploadService.submit(file, Long.parseLong(auth.getName())))
+                .build();
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ApiResponse<UploadJobResponse> getJob(@PathVariable String jobId, Authentication auth) {
+        return ApiResponse.<UploadJobResponse>builder()
+                .result(uploadService.getJob(jobId, Long.parseLong(auth.getName())))
+                .build();
+    }
+
     @PostMapping("/file")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "meetingCode", required = false) String meetingCode) {
         try {
-            String fileUrl = s3Service.uploadFile(file);
+            String fileUrl = s3Service.uploadFile(file, meetingCode);
             return ResponseEntity.ok("File uploaded successfully: " + fileUrl);
         } catch (Exception e) {
             return ResponseEntity.status(500).body("File upload failed: " + e.getMessage());
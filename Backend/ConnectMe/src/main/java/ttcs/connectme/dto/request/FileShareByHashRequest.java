@@ -0,0 +1,27 @@
+package ttcs.connectme.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FileShareByHashRequest {
+    @NotBlank
+    String meetingCode;
+
+    @NotBlank
+    @Pattern(regexp = "^[0-9a-f]{64}$")
+    String sha256; // lowercase hex SHA-256 of the file content
+
+    @NotBlank
+    String fileName;
+
+    String contentType;
+
+    String senderName;
+}
@@ -0,0 +1,20 @@
+package ttcs.connectme.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FileUploadCompleteRequest {
+    @NotBlank
+    String meetingCode;
+
+    @NotBlank
+    String key; // returned by the upload intent
+
+    String senderName;
+}
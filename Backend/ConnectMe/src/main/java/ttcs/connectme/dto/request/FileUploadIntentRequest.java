@@ -0,0 +1,26 @@
+package ttcs.connectme.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FileUploadIntentRequest {
+    @NotBlank
+    String meetingCode;
+
+    @NotBlank
+    String fileName;
+
+    String contentType;
+
+    long fileSize;
+
+    @Pattern(regexp = "^[0-9a-f]{64}$")
+    String sha256; // lowercase hex SHA-256 of the content, optional; storage verifies it on upload
+}
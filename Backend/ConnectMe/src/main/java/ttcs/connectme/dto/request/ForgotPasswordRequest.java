@@ -16,4 +16,7 @@ public class ForgotPasswordRequest {
 
     @NotBlank
     String newPassword;
+
+    @NotBlank
+    String otp;
 }
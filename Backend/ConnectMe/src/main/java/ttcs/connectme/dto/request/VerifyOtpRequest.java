@@ -0,0 +1,19 @@
+package ttcs.connectme.dto.request;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VerifyOtpRequest {
+    @Email(message = "INVALID_EMAIL")
+    String email;
+
+    @NotBlank
+    String otp;
+}
@@ -0,0 +1,15 @@
+package ttcs.connectme.dto.response;
+
+import lombok.*;
+import ttcs.connectme.dto.webrtc.ChatMessage;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatHistoryResponse {
+    private List<ChatMessage> messages; // oldest first
+    private String nextCursor; // pass as ?before= to load older messages, null when there are none
+}
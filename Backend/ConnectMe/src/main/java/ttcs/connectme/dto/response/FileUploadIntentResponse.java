@@ -0,0 +1,20 @@
+package ttcs.connectme.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileUploadIntentResponse {
+    private String key; // object key, sent back on completion
+    private String uploadUrl; // presigned PUT, the Content-Type header must match contentType
+    private String contentType;
+    private String checksumSha256; // when set, sent as the x-amz-checksum-sha256 header of the PUT
+    private Date expiresAt;
+}
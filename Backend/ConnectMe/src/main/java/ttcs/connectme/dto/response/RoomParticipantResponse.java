@@ -0,0 +1,17 @@
+package ttcs.connectme.dto.response;
+
+import lombok.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomParticipantResponse {
+    private Long userId;
+    private String username;
+    private String fullName;
+    private String avatar;
+    private boolean audioEnabled;
+    private boolean videoEnabled;
+    private boolean screenSharing;
+}
@@ -0,0 +1,16 @@
+package ttcs.connectme.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomSnapshotResponse {
+    private MeetingResponse meeting;
+    private List<RoomParticipantResponse> participants;
+    private long version; // media-state deltas with a higher version apply on top of this snapshot
+    private ChatHistoryResponse recentChat;
+}
@@ -0,0 +1,22 @@
+package ttcs.connectme.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ttcs.connectme.enums.UploadJobStatus;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadJobResponse {
+    private String jobId;
+    private UploadJobStatus status;
+    private String fileName;
+    private long fileSize;
+    private String url; // set once the job completed
+    private String error; // set when the job failed
+}
@@ -3,6 +3,8 @@ package ttcs.connectme.dto.response;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,5 +17,6 @@ public class UserResponse {
     String email;
     String fullName;
     String avatar;
+    Map<String, String> avatarVariants; // thumbnail/tile/full URLs of the avatar, when generated
     Boolean isActive;
 }
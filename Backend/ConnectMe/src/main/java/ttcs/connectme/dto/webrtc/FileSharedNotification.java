@@ -2,6 +2,8 @@ package ttcs.connectme.dto.webrtc;
 
 import lombok.*;
 
+import java.util.Map;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -13,6 +15,8 @@ public class FileSharedNotification {
     private String fileType;
     private long fileSize;
     private String downloadUrl;
+    private String previewUrl; // images: smallest variant that fits a participant tile
+    private Map<String, String> variants; // images: thumbnail/tile/full URLs, when generated
     private String meetingCode;
     private Long senderId;
     private String senderName;
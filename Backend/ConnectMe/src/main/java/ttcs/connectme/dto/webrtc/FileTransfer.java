@@ -14,6 +14,9 @@ public class FileTransfer {
     private String fileName;
     private String fileType;
     private long fileSize;
-    private String fileData; // Base64 encoded
+    private String fileData; // Base64 encoded, only for legacy single-frame transfers
     private String timestamp;
+    private String transferId; // chunked transfers: set by the server on the offer
+    private int chunkSize;
+    private int chunkCount;
 }
\ No newline at end of file
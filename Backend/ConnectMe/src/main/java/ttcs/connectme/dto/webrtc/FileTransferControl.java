@@ -0,0 +1,22 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.*;
+
+/**
+ * Control frame of a chunked file transfer.
+ * Receivers send "accept" (also used to resume from seq) and "credit"; either side may "cancel".
+ * The server sends "credit" (sender may send chunks below seq), "rewind" (resend from seq),
+ * "complete" and "cancel"; a "cancel" to the sender that carries a userId means only that receiver left.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileTransferControl {
+    private String type;
+    private String transferId;
+    private String meetingCode;
+    private Long userId;
+    private int seq;
+    private int credits;
+}
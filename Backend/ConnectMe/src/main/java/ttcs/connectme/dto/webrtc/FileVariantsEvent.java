@@ -0,0 +1,19 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Sent on /topic/meeting.{code}.file.variants once the resized copies of a shared image are stored
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileVariantsEvent {
+    private String fileId;
+    private String meetingCode;
+    private String previewUrl;
+    private Map<String, String> variants;
+}
@@ -0,0 +1,20 @@
+package ttcs.connectme.dto.webrtc;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Final media state of one participant within a delta; flags that did not change are left null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MediaStateChange {
+    private Long userId;
+    private Boolean audioEnabled;
+    private Boolean videoEnabled;
+    private Boolean screenSharing;
+}
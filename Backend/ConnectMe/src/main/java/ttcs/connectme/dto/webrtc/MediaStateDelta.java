@@ -0,0 +1,16 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaStateDelta {
+    private String meetingCode;
+    private long version; // increases by one per delta published for the room
+    private List<MediaStateChange> changes;
+}
@@ -0,0 +1,15 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipantState {
+    private Long userId;
+    private boolean audioEnabled;
+    private boolean videoEnabled;
+    private boolean screenSharing;
+}
@@ -0,0 +1,18 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SignalBatch {
+    private String type; // "ice-candidates"
+    private String from;
+    private String targetUserId;
+    private String meetingCode;
+    private List<String> payloads; // JSON stringified ICE candidates, in arrival order
+}
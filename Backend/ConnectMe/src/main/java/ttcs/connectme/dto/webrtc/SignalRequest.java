@@ -13,4 +13,5 @@ public class SignalRequest {
     private String targetUserId;
     private String meetingCode;
     private String payload; // JSON stringified SDP or ICE candidate
+    private String payloadEncoding; // null for plain text, "deflate" for base64 raw-deflated payload
 }
\ No newline at end of file
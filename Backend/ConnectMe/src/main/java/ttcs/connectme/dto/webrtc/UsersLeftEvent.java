@@ -0,0 +1,15 @@
+package ttcs.connectme.dto.webrtc;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsersLeftEvent {
+    private List<Long> userIds;
+    private String meetingCode;
+}
@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Keyset pagination of a meeting's history: where meeting_id = ? and (sent_at, id) < (?, ?)
+        @Index(name = "idx_chat_messages_meeting_sent_at_id", columnList = "meeting_id, sent_at, id")
+})
 public class ChatMessageEntity extends BaseEntity {
 
     @Id
@@ -0,0 +1,49 @@
+package ttcs.connectme.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored content shared by every {@link FileEntity} with the same SHA-256.
+ * Rows are hard-deleted by the blob collector once refCount has stayed at zero for the grace period.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "file_blobs", indexes = {
+        @Index(name = "idx_file_blobs_ref_count_released_at", columnList = "ref_count, released_at")
+})
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FileBlobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "sha256", nullable = false, unique = true, length = 64)
+    String sha256;
+
+    @Column(name = "storage_key", nullable = false)
+    String storageKey;
+
+    @Column(name = "size", nullable = false)
+    Long size;
+
+    @Column(name = "content_type", nullable = false)
+    String contentType;
+
+    @Column(name = "ref_count", nullable = false)
+    Integer refCount;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+
+    @Column(name = "released_at")
+    LocalDateTime releasedAt; // last time refCount dropped to zero
+}
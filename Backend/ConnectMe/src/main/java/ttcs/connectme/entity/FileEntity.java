@@ -33,6 +33,15 @@ public class FileEntity extends BaseEntity {
     @Column(name = "file_path", nullable = false)
     String filePath;
 
+    // Object key the uploader completed, so a retried completion finds this row; null when shared by hash
+    @Column(name = "upload_key", unique = true)
+    String uploadKey;
+
+    // Content-addressed blob holding the bytes; null for files stored before deduplication
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id")
+    FileBlobEntity blob;
+
     @Column(name = "file_size", nullable = false)
     Long fileSize;
 
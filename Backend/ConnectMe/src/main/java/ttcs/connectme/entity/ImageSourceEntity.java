@@ -0,0 +1,29 @@
+package ttcs.connectme.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * An original the derivative pipeline has finished with, whether or not it needed any variants
+ * (see {@link ImageVariantEntity}); keyed like the variants.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "image_sources")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ImageSourceEntity {
+
+    @Id
+    @Column(name = "source_key", nullable = false, length = 512)
+    String sourceKey;
+
+    @Column(name = "processed_at")
+    LocalDateTime processedAt;
+}
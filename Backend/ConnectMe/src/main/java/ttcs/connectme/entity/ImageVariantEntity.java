@@ -0,0 +1,51 @@
+package ttcs.connectme.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import ttcs.connectme.enums.ImageVariant;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resized copy of an uploaded image. sourceKey is the original's storage key for meeting files
+ * and its URL for avatars.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "image_variants", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_image_variants_source_variant", columnNames = {"source_key", "variant"})
+})
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ImageVariantEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "source_key", nullable = false, length = 512)
+    String sourceKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "variant", nullable = false, length = 16)
+    ImageVariant variant;
+
+    @Column(name = "storage_key", nullable = false, length = 512)
+    String storageKey;
+
+    @Column(name = "url", nullable = false, length = 1024)
+    String url;
+
+    @Column(name = "width", nullable = false)
+    Integer width;
+
+    @Column(name = "height", nullable = false)
+    Integer height;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+}
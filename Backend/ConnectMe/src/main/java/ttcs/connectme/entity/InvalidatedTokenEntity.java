@@ -3,9 +3,11 @@ package ttcs.connectme.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
 
 import java.util.Date;
 
@@ -16,7 +18,12 @@ import java.util.Date;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "invalidated_token")
+@Table(name = "invalidated_token", indexes = {
+        // Purge of expired rows: where expiryTime < now order by expiryTime limit n
+        @Index(name = "idx_invalidated_token_expiry_time", columnList = "expiryTime"),
+        // Incremental reload of the revocation index: where revokedAt >= last seen order by revokedAt, id
+        @Index(name = "idx_invalidated_token_revoked_at", columnList = "revokedAt, id")
+})
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class InvalidatedTokenEntity {
     @Id
@@ -24,4 +31,8 @@ public class InvalidatedTokenEntity {
 
     @Column (name = "expiryTime")
     Date expiryTime;
+
+    @CreationTimestamp
+    @Column(name = "revokedAt", updatable = false)
+    Date revokedAt;
 }
@@ -26,6 +26,14 @@ public enum ErrorCode {
     INVALID_CREDENTIALS("Invalid Credentials", HttpStatus.UNAUTHORIZED),
     INCORRECT_PASSWORD("Incorrect current password", HttpStatus.BAD_REQUEST),
     FILE_UPLOAD_ERROR("File upload error", HttpStatus.BAD_REQUEST),
+    FILE_NOT_FOUND("File not found", HttpStatus.NOT_FOUND),
+    FILE_TOO_LARGE("File is too large", HttpStatus.PAYLOAD_TOO_LARGE),
+    UPLOAD_JOB_NOT_FOUND("Upload job not found", HttpStatus.NOT_FOUND),
+    UPLOAD_QUEUE_FULL("Too many uploads in progress, try again later", HttpStatus.SERVICE_UNAVAILABLE),
+    INVALID_OTP("Invalid or expired OTP", HttpStatus.BAD_REQUEST),
+    SEND_OTP_ERROR("Cannot send OTP", HttpStatus.BAD_REQUEST),
+    TOO_MANY_REQUESTS("Too many requests, try again later", HttpStatus.TOO_MANY_REQUESTS),
+    INVALID_CURSOR("Invalid pagination cursor", HttpStatus.BAD_REQUEST),
     SEND_REMINDER_ERROR("Cannot send email reminder", HttpStatus.BAD_REQUEST);
 
     String message;
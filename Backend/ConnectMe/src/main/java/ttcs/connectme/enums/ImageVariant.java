@@ -0,0 +1,24 @@
+package ttcs.connectme.enums;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Derivative sizes generated for uploaded images, smallest first; maxDimension bounds the longer side
+ */
+@Getter
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public enum ImageVariant {
+    THUMBNAIL(96),
+    TILE(480),
+    FULL(1920);
+
+    int maxDimension;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,8 @@
+package ttcs.connectme.enums;
+
+public enum UploadJobStatus {
+    QUEUED,
+    UPLOADING,
+    COMPLETED,
+    FAILED;
+}
@@ -14,6 +14,7 @@ public interface UserMapper {
     @Mapping(target = "passwordHash", ignore = true)
     UserEntity toEntity(UserCreateRequest request);
 
+    @Mapping(target = "avatarVariants", ignore = true)
     UserResponse toResponse(UserEntity user);
 
     void update(UserUpdateRequest request, @MappingTarget UserEntity user);
@@ -0,0 +1,45 @@
+package ttcs.connectme.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ttcs.connectme.entity.ChatMessageEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity, Long> {
+
+    @Query("select c.id as id, s.id as senderId, coalesce(s.fullName, s.username) as senderName, " +
+            "c.content as content, c.sentAt as sentAt " +
+            "from ChatMessageEntity c join c.sender s " +
+            "where c.meeting.meetingCode = :meetingCode and c.isDeleted = false " +
+            "order by c.sentAt desc, c.id desc")
+    List<ChatHistoryView> findLatest(@Param("meetingCode") String meetingCode, Pageable pageable);
+
+    @Query("select c.id as id, s.id as senderId, coalesce(s.fullName, s.username) as senderName, " +
+            "c.content as content, c.sentAt as sentAt " +
+            "from ChatMessageEntity c join c.sender s " +
+            "where c.meeting.meetingCode = :meetingCode and c.isDeleted = false " +
+            "and (c.sentAt < :sentAt or (c.sentAt = :sentAt and c.id < :id)) " +
+            "order by c.sentAt desc, c.id desc")
+    List<ChatHistoryView> findBefore(@Param("meetingCode") String meetingCode,
+                                     @Param("sentAt") LocalDateTime sentAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    interface ChatHistoryView {
+        Long getId();
+
+        Long getSenderId();
+
+        String getSenderName();
+
+        String getContent();
+
+        LocalDateTime getSentAt();
+    }
+}
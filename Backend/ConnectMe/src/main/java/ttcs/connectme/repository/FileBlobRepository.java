@@ -0,0 +1,42 @@
+package ttcs.connectme.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ttcs.connectme.entity.FileBlobEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlobEntity, Long> {
+    Optional<FileBlobEntity> findBySha256(String sha256);
+
+    @Transactional
+    @Modifying
+    @Query("update FileBlobEntity b set b.refCount = b.refCount + 1 where b.id = :id")
+    int acquire(@Param("id") Long id);
+
+    // releasedAt is assigned first: MySQL evaluates SET clauses left to right against the updated row
+    @Transactional
+    @Modifying
+    @Query("update FileBlobEntity b set b.releasedAt = case when b.refCount = 1 then :now else b.releasedAt end, " +
+            "b.refCount = b.refCount - 1 where b.id = :id and b.refCount > 0")
+    int release(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query("select b from FileBlobEntity b where b.refCount = 0 and b.releasedAt < :cutoff order by b.releasedAt")
+    List<FileBlobEntity> findUnreferenced(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Only succeeds while the blob is still unreferenced, so a concurrent acquire wins over the collector
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from FileBlobEntity b where b.id = :id and b.refCount = 0")
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
@@ -0,0 +1,16 @@
+package ttcs.connectme.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ttcs.connectme.entity.FileEntity;
+
+import java.util.Optional;
+
+@Repository
+public interface FileRepository extends JpaRepository<FileEntity, Long> {
+    Optional<FileEntity> findByIdAndIsDeletedFalse(Long id);
+
+    Optional<FileEntity> findByUploadKey(String uploadKey);
+
+    boolean existsByUploaderIdAndBlobSha256AndIsDeletedFalse(Long uploaderId, String sha256);
+}
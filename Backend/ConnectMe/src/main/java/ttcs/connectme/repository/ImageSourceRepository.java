@@ -0,0 +1,9 @@
+package ttcs.connectme.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ttcs.connectme.entity.ImageSourceEntity;
+
+@Repository
+public interface ImageSourceRepository extends JpaRepository<ImageSourceEntity, String> {
+}
@@ -0,0 +1,16 @@
+package ttcs.connectme.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ttcs.connectme.entity.ImageVariantEntity;
+
+import java.util.List;
+
+@Repository
+public interface ImageVariantRepository extends JpaRepository<ImageVariantEntity, Long> {
+    List<ImageVariantEntity> findBySourceKey(String sourceKey);
+
+    @Transactional
+    void deleteBySourceKey(String sourceKey);
+}
@@ -1,9 +1,28 @@
 package ttcs.connectme.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ttcs.connectme.entity.InvalidatedTokenEntity;
 
+import java.util.Date;
+import java.util.List;
+
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedTokenEntity, String> {
+    /**
+     * Tokens still unexpired, paged by id so rows inserted or purged meanwhile never shift a page
+     */
+    @Query("select t from InvalidatedTokenEntity t where t.expiryTime > :now and t.id > :afterId order by t.id")
+    List<InvalidatedTokenEntity> findUnexpired(@Param("now") Date now, @Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Unexpired tokens revoked at or after since, paged by (revokedAt, id) after the last row of the previous page
+     */
+    @Query("select t from InvalidatedTokenEntity t where t.expiryTime > :now and " +
+            "(t.revokedAt > :since or (t.revokedAt = :since and t.id > :afterId)) order by t.revokedAt, t.id")
+    List<InvalidatedTokenEntity> findRevokedSince(@Param("now") Date now, @Param("since") Date since,
+                                                  @Param("afterId") String afterId, Pageable pageable);
 }
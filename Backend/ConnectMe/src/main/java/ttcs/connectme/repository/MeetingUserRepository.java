@@ -1,9 +1,14 @@
 package ttcs.connectme.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ttcs.connectme.entity.MeetingUserEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +25,19 @@ public interface MeetingUserRepository extends JpaRepository<MeetingUserEntity,
     List<MeetingUserEntity> getAllByMeetingMeetingCodeAndIsDeletedFalse(String meetingCode);
 
     List<MeetingUserEntity> getAllByMeetingMeetingCode(String meetingCode);
+
+    @Modifying
+    @Query("update MeetingUserEntity mu set mu.isOnline = false, mu.leaveTime = :now " +
+            "where mu.meeting.meetingCode = :meetingCode and mu.user.id in :userIds and mu.isDeleted = false")
+    int markLeft(@Param("meetingCode") String meetingCode,
+                 @Param("userIds") Collection<Long> userIds,
+                 @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update MeetingUserEntity mu set mu.isOnline = true, mu.joinTime = :now, mu.lastHeartbeat = :now " +
+            "where mu.meeting.meetingCode = :meetingCode and mu.user.id = :userId " +
+            "and mu.isDeleted = false and mu.isOnline = false")
+    int markOnline(@Param("meetingCode") String meetingCode,
+                   @Param("userId") Long userId,
+                   @Param("now") LocalDateTime now);
 }
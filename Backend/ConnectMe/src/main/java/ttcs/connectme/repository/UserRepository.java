@@ -1,7 +1,11 @@
 package ttcs.connectme.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ttcs.connectme.entity.MeetingUserEntity;
 import ttcs.connectme.entity.UserEntity;
 
@@ -11,6 +15,8 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
     Optional<UserEntity> findByIdAndIsDeletedFalse (Long id);
 
+    boolean existsByIdAndIsDeletedFalse(Long id);
+
     Optional<UserEntity> findByEmailAndIsDeletedFalse(String email);
 
     boolean existsByUsernameAndIsDeletedFalse(String username);
@@ -20,4 +26,12 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
     Optional<UserEntity> findByUsernameAndIsDeleted(String username, boolean isDeleted);
 
     Optional<UserEntity> findByIdAndIsDeleted(Long id, boolean isDeleted);
+
+    /**
+     * Only replaces the hash it was computed from, a password changed meanwhile is kept
+     */
+    @Transactional
+    @Modifying
+    @Query("update UserEntity u set u.passwordHash = :newHash where u.id = :id and u.passwordHash = :oldHash")
+    int replacePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
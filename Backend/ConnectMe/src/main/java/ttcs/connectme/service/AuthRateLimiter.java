@@ -0,0 +1,91 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.utils.TokenBucketLimiter;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-IP and per-account token buckets in front of the unauthenticated auth endpoints, checked before
+ * any database, SMTP or BCrypt work; an empty bucket fails the request with TOO_MANY_REQUESTS (429).
+ * Accounts are keyed by the email (OTP, register) or username (login) in the request, IPs by the client
+ * address Tomcat resolves from X-Forwarded-For when the request came through a trusted proxy.
+ */
+@Service
+public class AuthRateLimiter {
+    private final TokenBucketLimiter loginByIp;
+    private final TokenBucketLimiter loginByAccount;
+    private final TokenBucketLimiter registerByIp;
+    private final TokenBucketLimiter registerByEmail;
+    private final TokenBucketLimiter otpByIp;
+    private final TokenBucketLimiter otpByEmail;
+
+    private final Counter rejected;
+
+    public AuthRateLimiter(MeterRegistry meterRegistry,
+                           @Value("${auth.rate-limit.login.ip-capacity:20}") int loginIpCapacity,
+                           @Value("${auth.rate-limit.login.ip-refill-ms:3000}") long loginIpRefill,
+                           @Value("${auth.rate-limit.login.account-capacity:10}") int loginAccountCapacity,
+                           @Value("${auth.rate-limit.login.account-refill-ms:30000}") long loginAccountRefill,
+                           @Value("${auth.rate-limit.register.ip-capacity:5}") int registerIpCapacity,
+                           @Value("${auth.rate-limit.register.ip-refill-ms:60000}") long registerIpRefill,
+                           @Value("${auth.rate-limit.register.email-capacity:3}") int registerEmailCapacity,
+                           @Value("${auth.rate-limit.register.email-refill-ms:600000}") long registerEmailRefill,
+                           @Value("${auth.rate-limit.otp.ip-capacity:5}") int otpIpCapacity,
+                           @Value("${auth.rate-limit.otp.ip-refill-ms:60000}") long otpIpRefill,
+                           @Value("${auth.rate-limit.otp.email-capacity:3}") int otpEmailCapacity,
+                           @Value("${auth.rate-limit.otp.email-refill-ms:120000}") long otpEmailRefill) {
+        this.loginByIp = new TokenBucketLimiter(loginIpCapacity, loginIpRefill);
+        this.loginByAccount = new TokenBucketLimiter(loginAccountCapacity, loginAccountRefill);
+        this.registerByIp = new TokenBucketLimiter(registerIpCapacity, registerIpRefill);
+        this.registerByEmail = new TokenBucketLimiter(registerEmailCapacity, registerEmailRefill);
+        this.otpByIp = new TokenBucketLimiter(otpIpCapacity, otpIpRefill);
+        this.otpByEmail = new TokenBucketLimiter(otpEmailCapacity, otpEmailRefill);
+
+        this.rejected = Counter.builder("auth.rate-limit.rejected")
+                .description("Auth requests refused by a rate limiter")
+                .register(meterRegistry);
+        meterRegistry.gauge("auth.rate-limit.buckets", this, limiter -> limiter.size());
+    }
+
+    public void checkLogin(String ip, String username) {
+        check(loginByIp, ip, loginByAccount, username);
+    }
+
+    public void checkRegister(String ip, String email) {
+        check(registerByIp, ip, registerByEmail, email);
+    }
+
+    public void checkOtp(String ip, String email) {
+        check(otpByIp, ip, otpByEmail, email);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        limiters().forEach(TokenBucketLimiter::evictIdle);
+    }
+
+    private void check(TokenBucketLimiter byIp, String ip, TokenBucketLimiter byAccount, String account) {
+        // IP first: a flood of distinct accounts from one address never creates per-account buckets
+        if (!byIp.tryAcquire(ip) ||
+                (account != null && !byAccount.tryAcquire(account.trim().toLowerCase(Locale.ROOT)))) {
+            rejected.increment();
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+    }
+
+    private double size() {
+        return limiters().stream().mapToInt(TokenBucketLimiter::size).sum();
+    }
+
+    private List<TokenBucketLimiter> limiters() {
+        return List.of(loginByIp, loginByAccount, registerByIp, registerByEmail, otpByIp, otpByEmail);
+    }
+}
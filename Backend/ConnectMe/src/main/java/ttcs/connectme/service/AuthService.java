@@ -9,10 +9,12 @@ import com.nimbusds.jwt.SignedJWT;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import ttcs.connectme.configuration.CustomJwtDecoder;
 import ttcs.connectme.dto.request.LoginRequest;
 import ttcs.connectme.dto.request.LogoutRequest;
 import ttcs.connectme.dto.request.RefreshRequest;
@@ -35,6 +37,8 @@ import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @Service
@@ -42,14 +46,26 @@ import java.util.UUID;
 public class AuthService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final CustomJwtDecoder customJwtDecoder;
+    private final TokenRevocationIndex tokenRevocationIndex;
 
     @NonFinal
     @Value("${signer_key}")
     private String signerKey;
 
-    public UserResponse register(UserCreateRequest request) {
+    // Database and token work after a hash, so the BCrypt pool only ever runs BCrypt
+    @NonFinal
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private Executor applicationTaskExecutor;
+
+    /**
+     * Completes on the application task executor once hashed; fails right away with TOO_MANY_REQUESTS when
+     * the password hashing pool is saturated
+     */
+    public CompletableFuture<UserResponse> register(UserCreateRequest request) {
         if (userRepository.existsByUsernameAndIsDeletedFalse(request.getUsername()))
             throw new AppException(ErrorCode.USERNAME_EXISTED);
 
@@ -57,10 +73,11 @@ public class AuthService {
             throw new AppException(ErrorCode.EMAIL_EXISTED);
 
         UserEntity user = userMapper.toEntity(request);
-        user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
-
-        UserEntity userCreate = userRepository.save(user);
-        return userMapper.toResponse(userCreate);
+        return passwordHasher.encode(request.getPassword()).thenApplyAsync(hash -> {
+            user.setPasswordHash(hash);
+            UserEntity userCreate = userRepository.save(user);
+            return userMapper.toResponse(userCreate);
+        }, applicationTaskExecutor);
     }
 
     public LoginResponse validateToken(String userName) {
@@ -78,13 +95,24 @@ public class AuthService {
                 .build();
     }
 
-    public LoginResponse authenticate(LoginRequest request) {
+    /**
+     * Completes on the application task executor once hashed; fails right away with TOO_MANY_REQUESTS when
+     * the password hashing pool is saturated
+     */
+    public CompletableFuture<LoginResponse> authenticate(LoginRequest request) {
         UserEntity user = userRepository.findByUsernameAndIsDeleted(request.getUsername(), false)
                 .orElseThrow(() -> new AppException(ErrorCode.INVALID_CREDENTIALS));
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash()))
-            throw new AppException(ErrorCode.INVALID_CREDENTIALS);
+        return passwordHasher.matches(request.getPassword(), user.getPasswordHash()).thenApplyAsync(matches -> {
+            if (!matches)
+                throw new AppException(ErrorCode.INVALID_CREDENTIALS);
 
+            rehashIfNeeded(user, request.getPassword());
+            return loginResponse(user);
+        }, applicationTaskExecutor);
+    }
+
+    private LoginResponse loginResponse(UserEntity user) {
         String token = generateToken(user);
         LoginResponse.UserInfo userInfo = new LoginResponse.UserInfo();
         userInfo.setId(user.getId());
@@ -97,6 +125,27 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Re-hash with the configured cost after it changed, in the background; skipped when the pool is busy
+     */
+    private void rehashIfNeeded(UserEntity user, String rawPassword) {
+        String oldHash = user.getPasswordHash();
+        if (!passwordHasher.needsRehash(oldHash))
+            return;
+
+        try {
+            passwordHasher.encode(rawPassword)
+                    .thenAcceptAsync(newHash -> userRepository.replacePasswordHash(user.getId(), oldHash, newHash),
+                            applicationTaskExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Cannot rehash password of user {}: {}", user.getId(), e.getMessage());
+                        return null;
+                    });
+        } catch (AppException e) {
+            log.debug("Password hashing pool busy, user {} keeps the old hash for now", user.getId());
+        }
+    }
+
     public LoginResponse loginForOAuth(OAuth2User oAuth2User) throws Exception {
 
         Map<String, Object> attributes = oAuth2User.getAttributes();
@@ -144,10 +193,13 @@ public class AuthService {
                 .id(id)
                 .expiryTime(expiryTime)
                 .build());
+        tokenRevocationIndex.revoke(id, expiryTime);
+        customJwtDecoder.invalidate(request.getToken());
     }
 
     public RefreshResponse refresh(RefreshRequest request) throws Exception {
-        SignedJWT signedJWT = SignedJWT.parse(request.getToken());
+        // Only a valid, unrevoked token may be traded in; its jti and exp are trusted from here on
+        SignedJWT signedJWT = verifyToken(request.getToken());
         String id = signedJWT.getJWTClaimsSet().getJWTID();
         Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
         Long userId = Long.parseLong(signedJWT.getJWTClaimsSet().getSubject());
@@ -159,6 +211,8 @@ public class AuthService {
                 .id(id)
                 .expiryTime(expiryTime)
                 .build());
+        tokenRevocationIndex.revoke(id, expiryTime);
+        customJwtDecoder.invalidate(request.getToken());
 
         return RefreshResponse.builder()
                 .token(generateToken(user))
@@ -198,7 +252,7 @@ public class AuthService {
         if (!(verified && expiration.after(new Date())))
             throw new AppException(ErrorCode.UNAUTHENTICATED);
 
-        if (invalidatedTokenRepository.existsById(signedJWT.getJWTClaimsSet().getJWTID()))
+        if (tokenRevocationIndex.isRevoked(signedJWT.getJWTClaimsSet().getJWTID(), expiration))
             throw new AppException(ErrorCode.UNAUTHENTICATED);
 
         return signedJWT;
@@ -0,0 +1,165 @@
+package ttcs.connectme.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.response.ChatHistoryResponse;
+import ttcs.connectme.dto.webrtc.ChatMessage;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.repository.ChatMessageRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat history of a meeting.
+ * The last N messages of every active room are kept in memory so late joiners get recent chat
+ * without a query; older messages are read from chat_messages with keyset pagination on
+ * (sent_at, id). Cursors are opaque to clients.
+ */
+@Service
+public class ChatHistoryService {
+    private final ChatMessageRepository chatMessageRepository;
+    private final Map<String, Ring> rooms = new ConcurrentHashMap<>();
+
+    private final int capacity;
+    private final int pageSize;
+    private final long idleMillis;
+
+    public ChatHistoryService(ChatMessageRepository chatMessageRepository,
+                              @Value("${chat.history.room-capacity:100}") int capacity,
+                              @Value("${chat.history.page-size:50}") int pageSize,
+                              @Value("${chat.history.idle-ttl-ms:1800000}") long idleMillis) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.capacity = Math.max(1, capacity);
+        this.pageSize = Math.max(1, pageSize);
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Remember a broadcast message in its room's ring buffer
+     */
+    public void record(ChatMessage message, LocalDateTime sentAt) {
+        if (message.getMeetingCode() == null) {
+            return;
+        }
+        ChatMessage copy = new ChatMessage(message.getId(), message.getSenderId(), message.getSenderName(),
+                message.getMeetingCode(), message.getText(), sentAt.toString(), message.getType());
+        rooms.computeIfAbsent(message.getMeetingCode(), code -> new Ring(capacity)).add(copy, sentAt);
+    }
+
+    /**
+     * Most recent messages of a room from memory, or from the database if the room has none cached
+     */
+    public ChatHistoryResponse recent(String meetingCode) {
+        Ring ring = rooms.get(meetingCode);
+        if (ring != null) {
+            ChatHistoryResponse response = ring.snapshot();
+            if (!response.getMessages().isEmpty()) {
+                return response;
+            }
+        }
+        return page(meetingCode, null);
+    }
+
+    /**
+     * One page of messages sent before the cursor, newest page first; a null cursor starts from the latest
+     */
+    public ChatHistoryResponse page(String meetingCode, String before) {
+        PageRequest limit = PageRequest.of(0, pageSize);
+        List<ChatMessageRepository.ChatHistoryView> rows;
+        if (before == null || before.isBlank()) {
+            rows = chatMessageRepository.findLatest(meetingCode, limit);
+        } else {
+            Cursor cursor = Cursor.decode(before);
+            rows = chatMessageRepository.findBefore(meetingCode, cursor.sentAt(), cursor.id(), limit);
+        }
+
+        List<ChatMessage> messages = new ArrayList<>(rows.size());
+        for (ChatMessageRepository.ChatHistoryView row : rows) {
+            messages.add(new ChatMessage(row.getId(), row.getSenderId(), row.getSenderName(), meetingCode,
+                    row.getContent(), row.getSentAt().toString(), "user"));
+        }
+        Collections.reverse(messages);
+
+        String nextCursor = null;
+        if (rows.size() == pageSize) {
+            ChatMessageRepository.ChatHistoryView oldest = rows.get(rows.size() - 1);
+            nextCursor = new Cursor(oldest.getSentAt(), oldest.getId()).encode();
+        }
+        return ChatHistoryResponse.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    public void evict(String meetingCode) {
+        rooms.remove(meetingCode);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.history.idle-ttl-ms:1800000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        rooms.values().removeIf(ring -> now - ring.lastWrite >= idleMillis);
+    }
+
+    private static final class Ring {
+        private final ArrayDeque<ChatMessage> messages;
+        private final ArrayDeque<LocalDateTime> sentAts;
+        private final int capacity;
+        volatile long lastWrite = System.currentTimeMillis();
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.messages = new ArrayDeque<>(capacity);
+            this.sentAts = new ArrayDeque<>(capacity);
+        }
+
+        synchronized void add(ChatMessage message, LocalDateTime sentAt) {
+            if (messages.size() == capacity) {
+                messages.pollFirst();
+                sentAts.pollFirst();
+            }
+            messages.addLast(message);
+            sentAts.addLast(sentAt);
+            lastWrite = System.currentTimeMillis();
+        }
+
+        synchronized ChatHistoryResponse snapshot() {
+            // Messages in memory may not have a database id yet; the cursor only goes by time, so
+            // the next page holds what was sent strictly before the oldest message shown here
+            String nextCursor = sentAts.isEmpty() ? null : new Cursor(sentAts.peekFirst(), 0L).encode();
+            return ChatHistoryResponse.builder()
+                    .messages(new ArrayList<>(messages))
+                    .nextCursor(nextCursor)
+                    .build();
+        }
+    }
+
+    private record Cursor(LocalDateTime sentAt, Long id) {
+        String encode() {
+            String raw = sentAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                LocalDateTime sentAt = LocalDateTime.parse(raw.substring(0, separator));
+                return new Cursor(sentAt, Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ttcs.connectme.dto.webrtc.ChatMessage;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for /meeting.chat.
+ * Messages are broadcast first and then put in a bounded ring buffer; a single writer thread drains it
+ * in batches of up to flush-size (or whatever arrived within flush-interval), inserts them with one JDBC
+ * batch and bumps meetings.chat_message_count once per meeting per batch, all in one transaction.
+ * When the database falls behind and the buffer is full, producers wait up to enqueue-timeout before
+ * the message is broadcast-only. Transient failures (lock timeouts, lost connections) retry the batch
+ * with a short backoff; any other failure writes the batch row by row so only the failing rows are
+ * dropped. Remaining messages are written on shutdown.
+ * For MySQL, rewriteBatchedStatements=true on the JDBC URL turns the batch into multi-row inserts.
+ */
+@Slf4j
+@Service
+public class ChatWriteBehindService {
+    private static final String INSERT_MESSAGE = "insert into chat_messages " +
+            "(meeting_id, sender_id, content, sent_at, created_at, updated_at, is_deleted) " +
+            "values (?, ?, ?, ?, ?, ?, false)";
+    private static final String INCREMENT_COUNT = "update meetings " +
+            "set chat_message_count = coalesce(chat_message_count, 0) + ? where meeting_code = ?";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingMessage> buffer;
+    private final Thread writer;
+
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final long enqueueTimeoutMillis;
+
+    private final Counter persistedCounter;
+    private final Counter droppedCounter;
+    private final Timer flushTimer;
+
+    private volatile boolean running = true;
+
+    public ChatWriteBehindService(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.persistence.enabled:true}") boolean enabled,
+                                  @Value("${chat.persistence.buffer-capacity:8192}") int bufferCapacity,
+                                  @Value("${chat.persistence.flush-size:200}") int flushSize,
+                                  @Value("${chat.persistence.flush-interval-ms:500}") long flushIntervalMillis,
+                                  @Value("${chat.persistence.enqueue-timeout-ms:50}") long enqueueTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.flushSize = Math.max(1, flushSize);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+
+        Gauge.builder("chat.persistence.buffered", buffer, BlockingQueue::size)
+                .description("Chat messages waiting to be written")
+                .register(meterRegistry);
+        this.persistedCounter = Counter.builder("chat.persistence.persisted")
+                .description("Chat messages written to chat_messages")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.persistence.dropped")
+                .description("Chat messages broadcast but not persisted")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.persistence.flush")
+                .description("Time to write one batch of chat messages")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::run, "chat-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            this.writer.start();
+        }
+    }
+
+    /**
+     * Queue a chat message for persistence. Returns false if it could not be buffered in time.
+     */
+    public boolean enqueue(ChatMessage message, LocalDateTime sentAt) {
+        if (!enabled || !running || !isPersistable(message)) {
+            return false;
+        }
+        PendingMessage pending = new PendingMessage(message.getMeetingCode(), message.getSenderId(),
+                message.getText(), sentAt);
+        try {
+            if (buffer.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCounter.increment();
+        log.warn("Chat buffer full, message from {} in meeting {} is not persisted",
+                message.getSenderId(), message.getMeetingCode());
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer.isAlive()) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                PendingMessage first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < flushSize && System.nanoTime() < deadline) {
+                    if (buffer.drainTo(batch, flushSize - batch.size()) == 0) {
+                        PendingMessage next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested; whatever was taken is written below, the rest by drain()
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        drain(batch);
+    }
+
+    private void drain(List<PendingMessage> batch) {
+        Thread.interrupted();
+        while (buffer.drainTo(batch, flushSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        log.info("Chat writer stopped");
+    }
+
+    private void write(List<PendingMessage> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> insert(batch)));
+                persistedCounter.increment(batch.size());
+                return;
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    log.warn("Chat batch of {} failed, writing it row by row: {}", batch.size(), e.getMessage());
+                    writeEach(batch);
+                    return;
+                }
+                log.warn("Chat batch of {} failed (attempt {}/{}): {}", batch.size(), attempt, MAX_ATTEMPTS, e.getMessage());
+                // Back off while the buffer absorbs new messages; producers feel it once it is full
+                try {
+                    Thread.sleep(flushIntervalMillis * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        droppedCounter.increment(batch.size());
+    }
+
+    /**
+     * One transaction per message, so a row the database refuses does not take the batch with it
+     */
+    private void writeEach(List<PendingMessage> batch) {
+        for (PendingMessage message : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(message)));
+                persistedCounter.increment();
+            } catch (Exception e) {
+                droppedCounter.increment();
+                log.warn("Dropping chat message from {} in meeting {}: {}",
+                        message.senderId(), message.meetingCode(), e.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<PendingMessage> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE, batch, batch.size(), (ps, message) -> {
+            ps.setString(1, message.meetingCode());
+            ps.setLong(2, message.senderId());
+            ps.setString(3, message.content());
+            ps.setTimestamp(4, Timestamp.valueOf(message.sentAt()));
+            ps.setTimestamp(5, now);
+            ps.setTimestamp(6, now);
+        });
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (PendingMessage message : batch) {
+            counts.merge(message.meetingCode(), 1, Integer::sum);
+        }
+        List<Object[]> increments = new ArrayList<>(counts.size());
+        counts.forEach((meetingCode, count) -> increments.add(new Object[]{count, meetingCode}));
+        jdbcTemplate.batchUpdate(INCREMENT_COUNT, increments);
+    }
+
+    private static boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private static boolean isPersistable(ChatMessage message) {
+        return message.getMeetingCode() != null
+                && message.getSenderId() != null
+                && message.getText() != null && !message.getText().isBlank()
+                && !"system".equals(message.getType());
+    }
+
+    private record PendingMessage(String meetingCode, Long senderId, String content, LocalDateTime sentAt) {
+    }
+}
@@ -0,0 +1,148 @@
+package ttcs.connectme.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.entity.FileBlobEntity;
+import ttcs.connectme.repository.FileBlobRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Content-addressed storage behind meeting files.
+ * Every stored object is registered under the SHA-256 of its bytes; a file whose hash is already known
+ * references the existing blob instead of keeping a second copy. Blobs are reference counted by the
+ * files pointing at them and deleted from storage by {@link #collectGarbage()} once nothing has
+ * referenced them for the grace period.
+ */
+@Slf4j
+@Service
+public class FileBlobService {
+    private final FileBlobRepository fileBlobRepository;
+    private final AmazonS3 amazonS3;
+    private final FileCache fileCache;
+    private final ImageDerivativeService imageDerivativeService;
+    private final String bucketName;
+    private final long graceMillis;
+    private final int batchSize;
+
+    private final Counter dedupHits;
+    private final Counter collected;
+
+    public FileBlobService(FileBlobRepository fileBlobRepository,
+                           AmazonS3 amazonS3,
+                           FileCache fileCache,
+                           ImageDerivativeService imageDerivativeService,
+                           MeterRegistry meterRegistry,
+                           @Value("${aws.s3.bucket-name}") String bucketName,
+                           @Value("${file.blob.gc-grace-ms:3600000}") long graceMillis,
+                           @Value("${file.blob.gc-batch-size:100}") int batchSize) {
+        this.fileBlobRepository = fileBlobRepository;
+        this.amazonS3 = amazonS3;
+        this.fileCache = fileCache;
+        this.imageDerivativeService = imageDerivativeService;
+        this.bucketName = bucketName;
+        this.graceMillis = graceMillis;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.dedupHits = Counter.builder("storage.dedup.hits")
+                .description("Shares served by an already stored blob")
+                .register(meterRegistry);
+        this.collected = Counter.builder("storage.blobs.collected")
+                .description("Unreferenced blobs deleted from storage")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a reference on the blob with this hash, if one is stored
+     */
+    public Optional<FileBlobEntity> acquire(String sha256) {
+        Optional<FileBlobEntity> blob = fileBlobRepository.findBySha256(sha256)
+                // The collector may have deleted the row since it was read
+                .filter(found -> fileBlobRepository.acquire(found.getId()) == 1);
+        blob.ifPresent(found -> dedupHits.increment());
+        return blob;
+    }
+
+    /**
+     * Register an object that was just written to storage and take a reference on it.
+     * If the same content is already stored, the new object is deleted and the existing blob is returned.
+     */
+    public FileBlobEntity register(String sha256, String storageKey, long size, String contentType) {
+        while (true) {
+            Optional<FileBlobEntity> existing = acquire(sha256);
+            if (existing.isPresent()) {
+                // A retried registration finds the blob it created, whose object must stay
+                if (!existing.get().getStorageKey().equals(storageKey)) {
+                    deleteObject(storageKey);
+                }
+                return existing.get();
+            }
+            try {
+                return fileBlobRepository.saveAndFlush(FileBlobEntity.builder()
+                        .sha256(sha256)
+                        .storageKey(storageKey)
+                        .size(size)
+                        .contentType(contentType)
+                        .refCount(1)
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Another upload of the same content registered first, reference that one
+                log.debug("Blob {} registered concurrently, retrying", sha256);
+            }
+        }
+    }
+
+    public void release(FileBlobEntity blob) {
+        fileBlobRepository.release(blob.getId(), LocalDateTime.now());
+    }
+
+    /**
+     * Delete blobs unreferenced for longer than the grace period, row first so a concurrent acquire
+     * either keeps the blob alive or finds nothing and uploads again under a new key
+     */
+    @Scheduled(fixedDelayString = "${file.blob.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(graceMillis * 1_000_000);
+        List<FileBlobEntity> candidates;
+        int deleted;
+        do {
+            candidates = fileBlobRepository.findUnreferenced(cutoff, PageRequest.of(0, batchSize));
+            deleted = 0;
+            for (FileBlobEntity blob : candidates) {
+                try {
+                    if (fileBlobRepository.deleteIfUnreferenced(blob.getId()) != 1) {
+                        continue;
+                    }
+                } catch (DataIntegrityViolationException e) {
+                    log.warn("Blob {} is unreferenced but still linked to a file: {}", blob.getId(), e.getMessage());
+                    continue;
+                }
+                deleteObject(blob.getStorageKey());
+                fileCache.evict(blob.getStorageKey());
+                imageDerivativeService.remove(blob.getStorageKey())
+                        .forEach(variant -> deleteObject(variant.getStorageKey()));
+                collected.increment();
+                deleted++;
+            }
+            // Stop on a batch that made no progress, its rows would only be read again
+        } while (candidates.size() == batchSize && deleted > 0);
+    }
+
+    private void deleteObject(String storageKey) {
+        try {
+            amazonS3.deleteObject(bucketName, storageKey);
+        } catch (Exception e) {
+            log.warn("Cannot delete stored object {}: {}", storageKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package ttcs.connectme.service;
+
+import com.amazonaws.services.s3.model.S3Object;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local disk copy of hot meeting files.
+ * Objects up to max-object-size are fetched from storage whole, once: concurrent misses for the same key
+ * wait for the one fetch in flight. Files are evicted least recently used first once the cache
+ * outgrows max-size. Evicting a file that is still being sent is fine, the open channel keeps it readable;
+ * evicting a key whose fetch is in flight makes that fetch discard its copy instead of caching it.
+ * On startup only the cache's own files (hashed names and partial fetches) are removed from the directory.
+ */
+@Slf4j
+@Service
+public class FileCache {
+    private static final Pattern OWN_FILE = Pattern.compile("[0-9a-f]{64}|fetch-.*\\.part");
+
+    private final S3Service s3Service;
+    private final Path directory;
+    private final boolean enabled;
+    private final long maxSize;
+    private final long maxObjectSize;
+
+    private final Map<String, CachedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    // Keys evicted while their fetch was running, guarded by this
+    private final Set<String> evictedDuringFetch = new HashSet<>();
+    private long totalSize;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    public FileCache(S3Service s3Service,
+                     MeterRegistry meterRegistry,
+                     @Value("${file.cache.enabled:true}") boolean enabled,
+                     @Value("${file.cache.dir:${java.io.tmpdir}/connectme-file-cache}") String directory,
+                     @Value("${file.cache.max-size:2147483648}") long maxSize,
+                     @Value("${file.cache.max-object-size:67108864}") long maxObjectSize) throws IOException {
+        this.s3Service = s3Service;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxObjectSize = Math.min(maxObjectSize, maxSize);
+        this.directory = Files.createDirectories(Path.of(directory));
+        // Nothing on disk is indexed yet, start from an empty cache
+        clearDirectory();
+
+        this.hits = Counter.builder("file.cache.hits")
+                .description("Downloads served from the local file cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("file.cache.misses")
+                .description("Objects fetched from storage into the local file cache")
+                .register(meterRegistry);
+        this.bytesSaved = Counter.builder("file.cache.bytes.saved")
+                .baseUnit("bytes")
+                .description("Bytes served from the local file cache instead of storage")
+                .register(meterRegistry);
+        meterRegistry.gauge("file.cache.size", this, cache -> cache.size());
+    }
+
+    public boolean accepts(long size) {
+        return enabled && size <= maxObjectSize;
+    }
+
+    /**
+     * Local copy of a storage object, fetching it if needed; bytes is what the caller is about to serve
+     */
+    public Path get(String key, long bytes) throws IOException {
+        Path cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            bytesSaved.increment(bytes);
+            return cached;
+        }
+
+        CompletableFuture<Path> fetch = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(key, fetch);
+        if (running != null) {
+            Path path = await(running);
+            hits.increment();
+            bytesSaved.increment(bytes);
+            return path;
+        }
+
+        try {
+            // Re-check: a fetch may have completed between the lookup and taking the in-flight slot
+            Path path = lookup(key);
+            if (path != null) {
+                hits.increment();
+                bytesSaved.increment(bytes);
+            } else {
+                misses.increment();
+                path = fetch(key);
+            }
+            fetch.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                evictedDuringFetch.remove(key);
+            }
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, fetch);
+        }
+    }
+
+    /**
+     * Drop a cached object, e.g. once it was deleted from storage
+     */
+    public void evict(String key) {
+        CachedFile removed;
+        synchronized (this) {
+            removed = files.remove(key);
+            if (removed != null) {
+                totalSize -= removed.size();
+            } else if (inFlight.containsKey(key)) {
+                evictedDuringFetch.add(key);
+            }
+        }
+        if (removed != null) {
+            deleteQuietly(removed.path());
+        }
+    }
+
+    public synchronized long size() {
+        return totalSize;
+    }
+
+    private synchronized Path lookup(String key) {
+        CachedFile file = files.get(key);
+        return file == null ? null : file.path();
+    }
+
+    private Path fetch(String key) throws IOException {
+        Path target = directory.resolve(fileName(key));
+        Path partial = Files.createTempFile(directory, "fetch-", ".part");
+        long size;
+        try (S3Object object = s3Service.downloadFile(key);
+             InputStream in = object.getObjectContent()) {
+            size = Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (evictedDuringFetch.remove(key)) {
+                // Readers of this fetch miss the file and fall back to storage
+                evicted.add(target);
+            } else {
+                index(key, target, size, evicted);
+            }
+        }
+        evicted.forEach(FileCache::deleteQuietly);
+        return target;
+    }
+
+    /**
+     * Add a fetched file, evicting least recently used ones over max-size; caller holds the lock
+     */
+    private void index(String key, Path target, long size, List<Path> evicted) {
+        CachedFile previous = files.put(key, new CachedFile(target, size));
+        totalSize += size - (previous == null ? 0 : previous.size());
+        Iterator<Map.Entry<String, CachedFile>> eldest = files.entrySet().iterator();
+        while (totalSize > maxSize && eldest.hasNext()) {
+            Map.Entry<String, CachedFile> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            totalSize -= entry.getValue().size();
+            evicted.add(entry.getValue().path());
+            eldest.remove();
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> fetch) throws IOException {
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a cache fetch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void clearDirectory() throws IOException {
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.filter(path -> Files.isRegularFile(path) && OWN_FILE.matcher(path.getFileName().toString()).matches())
+                    .forEach(FileCache::deleteQuietly);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record CachedFile(Path path, long size) {
+    }
+}
@@ -0,0 +1,106 @@
+package ttcs.connectme.service;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.entity.FileEntity;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.repository.FileRepository;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+
+/**
+ * Streams meeting files out of storage.
+ * Files that fit the {@link FileCache} are served from local disk with FileChannel.transferTo.
+ * Larger ones are read with a ranged GET for exactly the bytes requested, copied through a small buffer,
+ * so seeking in a large recording never pulls the whole object.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FileDownloadService {
+    S3Service s3Service;
+    FileRepository fileRepository;
+    FileCache fileCache;
+
+    /**
+     * What a download of this file will serve. Deduplicated files use their blob id as a strong ETag
+     * (blobs never change and the hash itself is not handed out); other files use the storage ETag.
+     */
+    public Download describe(Long fileId) {
+        FileEntity file = fileRepository.findByIdAndIsDeletedFalse(fileId)
+                .orElseThrow(() -> new AppException(ErrorCode.FILE_NOT_FOUND));
+
+        String etag;
+        if (file.getBlob() != null) {
+            etag = "b" + file.getBlob().getId();
+        } else {
+            try {
+                etag = s3Service.getMetadata(file.getFilePath()).getETag();
+            } catch (AmazonS3Exception e) {
+                if (e.getStatusCode() == 404) {
+                    throw new AppException(ErrorCode.FILE_NOT_FOUND);
+                }
+                throw e;
+            }
+        }
+
+        long lastModified = file.getUploadedAt() == null ? -1
+                : file.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new Download(file.getFilePath(), file.getFileSize(), "\"" + etag + "\"", lastModified,
+                file.getContentType(), file.getFileName());
+    }
+
+    /**
+     * Copy bytes start..end (inclusive) of the file to the response, from the local cache when the
+     * file is small enough to be cached and from storage otherwise
+     */
+    public void stream(Download download, long start, long end, OutputStream out) throws IOException {
+        if (fileCache.accepts(download.size())) {
+            Path cached = fileCache.get(download.key(), end - start + 1);
+            try (FileChannel channel = FileChannel.open(cached, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                while (position <= end) {
+                    long sent = channel.transferTo(position, end - position + 1, target);
+                    if (sent <= 0) {
+                        throw new EOFException("Cached copy of " + download.key() + " is shorter than expected");
+                    }
+                    position += sent;
+                }
+                return;
+            } catch (NoSuchFileException e) {
+                // Evicted between lookup and open, nothing was written yet
+            }
+        }
+
+        try (S3Object object = s3Service.downloadRange(download.key(), start, end)) {
+            S3ObjectInputStream in = object.getObjectContent();
+            try {
+                in.transferTo(out);
+            } catch (IOException e) {
+                // Client went away: drop the connection instead of draining the rest of the range
+                in.abort();
+                throw e;
+            }
+        }
+    }
+
+    public record Download(String key, long size, String etag, long lastModified,
+                           String contentType, String fileName) {
+    }
+}
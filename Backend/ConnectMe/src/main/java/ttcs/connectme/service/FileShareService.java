@@ -0,0 +1,373 @@
+package ttcs.connectme.service;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.request.FileShareByHashRequest;
+import ttcs.connectme.dto.request.FileUploadCompleteRequest;
+import ttcs.connectme.dto.request.FileUploadIntentRequest;
+import ttcs.connectme.dto.response.FileUploadIntentResponse;
+import ttcs.connectme.dto.webrtc.FileSharedNotification;
+import ttcs.connectme.dto.webrtc.FileVariantsEvent;
+import ttcs.connectme.entity.FileBlobEntity;
+import ttcs.connectme.entity.FileEntity;
+import ttcs.connectme.entity.MeetingEntity;
+import ttcs.connectme.entity.UserEntity;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.enums.ImageVariant;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.repository.FileRepository;
+import ttcs.connectme.repository.MeetingRepository;
+import ttcs.connectme.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Direct-to-storage sharing of meeting files.
+ * The client asks for an upload intent, PUTs the bytes to the presigned URL itself and then calls
+ * complete; size and content type are taken from the stored object, not from the client.
+ * Only participants of the meeting can upload or share. Keys are meetings/{meetingCode}/{uploaderId}/{uuid}/{fileName},
+ * so a caller can only complete objects presigned for them in that meeting.
+ * Stored content is deduplicated by {@link FileBlobService}. A client that sends the SHA-256 with the
+ * intent gets a URL signed with x-amz-checksum-sha256, so storage refuses any other bytes and complete
+ * reads the verified hash back from the object instead of downloading it; a repeat share then references
+ * the existing blob. Uploads without a hash (too large to hash in the browser) are kept as they are.
+ * shareByHash skips the upload, but only for content the caller has shared before: a hash alone is no
+ * proof of holding the file.
+ */
+@Slf4j
+@Service
+public class FileShareService {
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final String CHECKSUM_HEADER = "x-amz-checksum-sha256";
+
+    private final AmazonS3 amazonS3;
+    private final FileRepository fileRepository;
+    private final MeetingRepository meetingRepository;
+    private final UserRepository userRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final FileBlobService fileBlobService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final FileCache fileCache;
+    private final MeetingUserService meetingUserService;
+
+    private final String bucketName;
+    private final long expiryMillis;
+    private final long maxFileSize;
+
+    public FileShareService(AmazonS3 amazonS3,
+                            FileRepository fileRepository,
+                            MeetingRepository meetingRepository,
+                            UserRepository userRepository,
+                            SimpMessagingTemplate messagingTemplate,
+                            FileBlobService fileBlobService,
+                            ImageDerivativeService imageDerivativeService,
+                            FileCache fileCache,
+                            MeetingUserService meetingUserService,
+                            @Value("${aws.s3.bucket-name}") String bucketName,
+                            @Value("${file.upload.presign-expiry-ms:900000}") long expiryMillis,
+                            @Value("${file.upload.max-size:1073741824}") long maxFileSize) {
+        this.amazonS3 = amazonS3;
+        this.fileRepository = fileRepository;
+        this.meetingRepository = meetingRepository;
+        this.userRepository = userRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.fileBlobService = fileBlobService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.fileCache = fileCache;
+        this.meetingUserService = meetingUserService;
+        this.bucketName = bucketName;
+        this.expiryMillis = expiryMillis;
+        this.maxFileSize = maxFileSize;
+    }
+
+    public FileUploadIntentResponse createIntent(FileUploadIntentRequest request, Long uploaderId) {
+        if (request.getFileSize() > maxFileSize) {
+            throw new AppException(ErrorCode.FILE_TOO_LARGE);
+        }
+        if (!meetingRepository.existsByMeetingCodeAndIsDeletedFalse(request.getMeetingCode())) {
+            throw new AppException(ErrorCode.MEETING_NOT_FOUND);
+        }
+        checkMember(request.getMeetingCode(), uploaderId);
+
+        String contentType = request.getContentType() == null || request.getContentType().isBlank()
+                ? DEFAULT_CONTENT_TYPE : request.getContentType();
+        String key = S3Service.uploaderKey(request.getMeetingCode(), uploaderId, request.getFileName());
+        Date expiresAt = new Date(System.currentTimeMillis() + expiryMillis);
+
+        GeneratePresignedUrlRequest presign = new GeneratePresignedUrlRequest(bucketName, key, HttpMethod.PUT)
+                .withExpiration(expiresAt)
+                .withContentType(contentType);
+        String checksum = null;
+        if (request.getSha256() != null) {
+            // Signed header: the PUT must carry it and storage rejects a body with another hash
+            checksum = Base64.getEncoder().encodeToString(HexFormat.of().parseHex(request.getSha256()));
+            presign.putCustomRequestHeader(CHECKSUM_HEADER, checksum);
+        }
+
+        return FileUploadIntentResponse.builder()
+                .key(key)
+                .uploadUrl(amazonS3.generatePresignedUrl(presign).toString())
+                .contentType(contentType)
+                .checksumSha256(checksum)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    /**
+     * Record an uploaded object as a meeting file and announce it on /topic/meeting.{code}.file.shared.
+     * If storage verified a SHA-256 for the object and the same content is already stored, the upload
+     * is dropped in favour of it. Completing a key again returns the file already recorded for it.
+     */
+    public FileSharedNotification complete(FileUploadCompleteRequest request, Long uploaderId) {
+        // Only keys of an intent issued to this caller
+        String prefix = S3Service.uploaderPrefix(request.getMeetingCode(), uploaderId);
+        if (!request.getKey().startsWith(prefix) || request.getKey().contains("..")) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        checkMember(request.getMeetingCode(), uploaderId);
+        Optional<FileSharedNotification> completed = completed(request);
+        if (completed.isPresent()) {
+            return completed.get();
+        }
+
+        ObjectMetadata metadata;
+        try {
+            GetObjectMetadataRequest head = new GetObjectMetadataRequest(bucketName, request.getKey());
+            head.putCustomRequestHeader("x-amz-checksum-mode", "ENABLED");
+            metadata = amazonS3.getObjectMetadata(head);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                throw new AppException(ErrorCode.FILE_NOT_FOUND);
+            }
+            throw e;
+        }
+        if (metadata.getContentLength() > maxFileSize) {
+            amazonS3.deleteObject(bucketName, request.getKey());
+            throw new AppException(ErrorCode.FILE_TOO_LARGE);
+        }
+
+        MeetingEntity meeting = meetingRepository.findByMeetingCodeAndIsDeletedFalse(request.getMeetingCode())
+                .orElseThrow(() -> new AppException(ErrorCode.MEETING_NOT_FOUND));
+        UserEntity uploader = userRepository.findByIdAndIsDeletedFalse(uploaderId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+
+        String contentType = metadata.getContentType() == null ? DEFAULT_CONTENT_TYPE : metadata.getContentType();
+        String sha256 = verifiedSha256(metadata);
+        try {
+            if (sha256 == null) {
+                return share(meeting, uploader, null, request.getKey(), request.getKey(), metadata.getContentLength(),
+                        fileNameOf(request.getKey()), contentType, request.getSenderName());
+            }
+            FileBlobEntity blob = fileBlobService.register(sha256, request.getKey(), metadata.getContentLength(), contentType);
+
+            return share(meeting, uploader, blob, request.getKey(), blob.getStorageKey(), blob.getSize(),
+                    fileNameOf(request.getKey()), contentType, request.getSenderName());
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent completion of the same key recorded it first
+            return completed(request).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * The file already recorded for the key of this completion, FILE_NOT_FOUND if it was deleted since
+     */
+    private Optional<FileSharedNotification> completed(FileUploadCompleteRequest request) {
+        return fileRepository.findByUploadKey(request.getKey()).map(file -> {
+            if (Boolean.TRUE.equals(file.getIsDeleted())) {
+                throw new AppException(ErrorCode.FILE_NOT_FOUND);
+            }
+            FileSharedNotification notification = notification(file, request.getSenderName());
+            if (imageDerivativeService.isImage(file.getContentType())) {
+                Map<String, String> variants = imageDerivativeService.variants(file.getFilePath());
+                if (!variants.isEmpty()) {
+                    notification.setVariants(variants);
+                    notification.setPreviewUrl(ImageDerivativeService.smallestFitting(variants, ImageVariant.TILE,
+                            notification.getDownloadUrl()));
+                }
+            }
+            return notification;
+        });
+    }
+
+    /**
+     * Share content the caller has already shared without uploading it again; FILE_NOT_FOUND (also
+     * for content stored only by other users) tells the client to fall back to a regular upload
+     */
+    public FileSharedNotification shareByHash(FileShareByHashRequest request, Long uploaderId) {
+        checkMember(request.getMeetingCode(), uploaderId);
+        MeetingEntity meeting = meetingRepository.findByMeetingCodeAndIsDeletedFalse(request.getMeetingCode())
+                .orElseThrow(() -> new AppException(ErrorCode.MEETING_NOT_FOUND));
+        UserEntity uploader = userRepository.findByIdAndIsDeletedFalse(uploaderId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+
+        if (!fileRepository.existsByUploaderIdAndBlobSha256AndIsDeletedFalse(uploaderId, request.getSha256())) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        FileBlobEntity blob = fileBlobService.acquire(request.getSha256())
+                .orElseThrow(() -> new AppException(ErrorCode.FILE_NOT_FOUND));
+        String contentType = request.getContentType() == null || request.getContentType().isBlank()
+                ? blob.getContentType() : request.getContentType();
+
+        return share(meeting, uploader, blob, null, blob.getStorageKey(), blob.getSize(),
+                request.getFileName(), contentType, request.getSenderName());
+    }
+
+    /**
+     * Soft-delete a file shared by this user and drop its reference on the blob
+     */
+    public void delete(Long fileId, Long userId) {
+        FileEntity file = fileRepository.findByIdAndIsDeletedFalse(fileId)
+                .orElseThrow(() -> new AppException(ErrorCode.FILE_NOT_FOUND));
+        if (!file.getUploader().getId().equals(userId)) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+
+        // Unlink the blob so the collector can delete its row once no live file references it
+        FileBlobEntity blob = file.getBlob();
+        file.setBlob(null);
+        file.setIsDeleted(true);
+        file.setDeletedAt(LocalDateTime.now());
+        file.setDeletedBy(userId);
+        fileRepository.save(file);
+        if (blob != null) {
+            fileBlobService.release(blob);
+        }
+    }
+
+    /**
+     * Save the file row for a stored object, and announce it to the meeting.
+     * blob is the deduplicated content the caller holds a reference on, null for an unhashed upload;
+     * uploadKey is the completed key, null when nothing was uploaded.
+     */
+    private FileSharedNotification share(MeetingEntity meeting, UserEntity uploader, FileBlobEntity blob,
+                                         String uploadKey, String storageKey, long size, String fileName,
+                                         String contentType, String senderName) {
+        FileEntity file = new FileEntity();
+        file.setMeeting(meeting);
+        file.setUploader(uploader);
+        file.setBlob(blob);
+        file.setFileName(fileName);
+        file.setFilePath(storageKey);
+        file.setUploadKey(uploadKey);
+        file.setFileSize(size);
+        file.setContentType(contentType);
+        file.setUploadedAt(LocalDateTime.now());
+        try {
+            file = fileRepository.saveAndFlush(file);
+        } catch (RuntimeException e) {
+            if (blob != null) {
+                fileBlobService.release(blob);
+            }
+            throw e;
+        }
+
+        FileSharedNotification notification = notification(file, senderName);
+        String downloadUrl = notification.getDownloadUrl();
+
+        if (imageDerivativeService.isImage(file.getContentType())) {
+            Map<String, String> variants = imageDerivativeService.variants(storageKey);
+            if (!variants.isEmpty()) {
+                // Content shared before, its variants already exist
+                notification.setVariants(variants);
+                notification.setPreviewUrl(ImageDerivativeService.smallestFitting(variants, ImageVariant.TILE, downloadUrl));
+            } else {
+                generateVariants(storageKey, size, notification);
+            }
+        }
+
+        messagingTemplate.convertAndSend("/topic/meeting." + meeting.getMeetingCode() + ".file.shared", notification);
+        return notification;
+    }
+
+    private FileSharedNotification notification(FileEntity file, String senderName) {
+        return FileSharedNotification.builder()
+                .fileId(String.valueOf(file.getId()))
+                .fileName(file.getFileName())
+                .fileType(file.getContentType())
+                .fileSize(file.getFileSize())
+                .downloadUrl(amazonS3.getUrl(bucketName, file.getFilePath()).toString())
+                .meetingCode(file.getMeeting().getMeetingCode())
+                .senderId(file.getUploader().getId())
+                .senderName(senderName != null ? senderName : file.getUploader().getFullName())
+                .timestamp(file.getUploadedAt().toString())
+                .build();
+    }
+
+    /**
+     * Resize a shared image in the background, reading it through the local file cache, and announce
+     * the variants on /topic/meeting.{code}.file.variants when they are stored
+     */
+    private void generateVariants(String storageKey, long size, FileSharedNotification notification) {
+        if (!fileCache.accepts(size)) {
+            return;
+        }
+        imageDerivativeService.submit(storageKey, () -> fileCache.get(storageKey, 0), s3Sink(storageKey), variants -> {
+            if (variants.isEmpty()) {
+                return;
+            }
+            FileVariantsEvent event = FileVariantsEvent.builder()
+                    .fileId(notification.getFileId())
+                    .meetingCode(notification.getMeetingCode())
+                    .previewUrl(ImageDerivativeService.smallestFitting(variants, ImageVariant.TILE,
+                            notification.getDownloadUrl()))
+                    .variants(variants)
+                    .build();
+            messagingTemplate.convertAndSend("/topic/meeting." + notification.getMeetingCode() + ".file.variants", event);
+        });
+    }
+
+    /**
+     * Variants go next to the original as {key}.{variant}.{format}
+     */
+    private ImageDerivativeService.Sink s3Sink(String storageKey) {
+        return (variant, data, format) -> {
+            String key = storageKey + "." + variant.key() + "." + format;
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(data.length);
+            metadata.setContentType("png".equals(format) ? "image/png" : "image/jpeg");
+            amazonS3.putObject(bucketName, key, new ByteArrayInputStream(data), metadata);
+            return new ImageDerivativeService.Stored(key, amazonS3.getUrl(bucketName, key).toString());
+        };
+    }
+
+    private void checkMember(String meetingCode, Long userId) {
+        if (!meetingUserService.isMember(meetingCode, userId)) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+    }
+
+    /**
+     * Hex SHA-256 that storage checked the upload against, null if the PUT carried no checksum
+     */
+    private static String verifiedSha256(ObjectMetadata metadata) {
+        Object checksum = metadata.getRawMetadataValue(CHECKSUM_HEADER);
+        if (!(checksum instanceof String value) || value.isBlank()) {
+            return null;
+        }
+        try {
+            byte[] digest = Base64.getDecoder().decode(value);
+            return digest.length == 32 ? HexFormat.of().formatHex(digest) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String fileNameOf(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+}
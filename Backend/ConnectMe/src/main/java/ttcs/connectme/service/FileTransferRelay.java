@@ -0,0 +1,365 @@
+package ttcs.connectme.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import ttcs.connectme.dto.webrtc.FileTransfer;
+import ttcs.connectme.dto.webrtc.FileTransferControl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relays chunked file transfers between a sender and the participants who accepted them.
+ * <p>
+ * The sender offers a file on /app/meeting.file, receivers accept it with a starting seq and a number
+ * of credits, and the sender streams fixed-size binary chunks to /app/meeting.file.chunk.
+ * Each receiver gets at most as many chunks as it has credits; the server keeps only the chunks between
+ * the slowest receiver and the sender's grant (at most window chunks), so a file is never held in heap.
+ * A receiver resumes by accepting again from the first seq it is missing; if that chunk is no longer
+ * buffered the sender is asked to rewind. A sender re-offering with the same transferId is rewound to
+ * the first chunk still missing. When a session disconnects, the transfers it was sending are cancelled
+ * for their receivers, and where it was receiving the sender is told with a "cancel" naming that user.
+ * <p>
+ * Chunks go out as separate small frames through the outbound channel, so credits keep every session's
+ * send buffer far below its limit and other rooms' signaling is never queued behind a whole file.
+ */
+@Slf4j
+@Service
+public class FileTransferRelay {
+    public static final String OFFER = "offer";
+    public static final String ACCEPT = "accept";
+    public static final String CREDIT = "credit";
+    public static final String REWIND = "rewind";
+    public static final String COMPLETE = "complete";
+    public static final String CANCEL = "cancel";
+
+    public static final String TRANSFER_ID_HEADER = "transfer-id";
+    public static final String SEQ_HEADER = "seq";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Map<String, Transfer> transfers = new ConcurrentHashMap<>();
+
+    private final int maxChunkSize;
+    private final int window;
+    private final int maxTransfers;
+    private final long idleMillis;
+
+    public FileTransferRelay(SimpMessagingTemplate messagingTemplate,
+                             @Value("${file.transfer.max-chunk-size:16384}") int maxChunkSize,
+                             @Value("${file.transfer.window:8}") int window,
+                             @Value("${file.transfer.max-active:64}") int maxTransfers,
+                             @Value("${file.transfer.idle-timeout-ms:60000}") long idleMillis) {
+        this.messagingTemplate = messagingTemplate;
+        this.maxChunkSize = maxChunkSize;
+        this.window = Math.max(1, window);
+        this.maxTransfers = maxTransfers;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Register a new transfer, or resume one when the offer carries a known transferId.
+     * Returns the offer to broadcast to the room, or null if nothing should be broadcast.
+     */
+    public FileTransfer offer(FileTransfer offer, String sessionId) {
+        if (offer.getTransferId() != null) {
+            Transfer existing = transfers.get(offer.getTransferId());
+            if (existing != null && existing.senderId == offer.getSenderId()) {
+                synchronized (existing) {
+                    existing.senderSession = sessionId;
+                    existing.touch();
+                    sendToSender(existing, REWIND, existing.firstMissing());
+                    sendToSender(existing, CREDIT, existing.grant);
+                }
+                return null;
+            }
+        }
+
+        if (offer.getChunkSize() <= 0 || offer.getChunkSize() > maxChunkSize) {
+            offer.setChunkSize(maxChunkSize);
+        }
+        offer.setChunkCount((int) ((offer.getFileSize() + offer.getChunkSize() - 1) / offer.getChunkSize()));
+        if (transfers.size() >= maxTransfers) {
+            log.warn("Rejecting file offer from {} in meeting {}: {} transfers active",
+                    offer.getSenderId(), offer.getMeetingCode(), transfers.size());
+            sendControl(offer.getSenderId(), offer.getMeetingCode(), FileTransferControl.builder()
+                    .type(CANCEL).meetingCode(offer.getMeetingCode()).build());
+            return null;
+        }
+
+        offer.setTransferId(UUID.randomUUID().toString());
+        offer.setFileData(null);
+        transfers.put(offer.getTransferId(), new Transfer(offer, sessionId));
+        return offer;
+    }
+
+    /**
+     * Accept a chunk from the sender and hand it to every receiver that has credit for it
+     */
+    public void chunk(String transferId, int seq, byte[] data, String sessionId) {
+        Transfer transfer = transfers.get(transferId);
+        if (transfer == null) {
+            return;
+        }
+        synchronized (transfer) {
+            if (!sessionId.equals(transfer.senderSession) || data.length > transfer.chunkSize
+                    || seq < 0 || seq >= transfer.chunkCount || seq >= transfer.grant) {
+                log.debug("Dropping chunk {} of transfer {}", seq, transferId);
+                return;
+            }
+            transfer.touch();
+            transfer.highestReceived = Math.max(transfer.highestReceived, seq);
+            if (seq >= transfer.lowestNeeded()) {
+                transfer.buffer.put(seq, data);
+            }
+            pump(transfer);
+        }
+    }
+
+    /**
+     * Meeting a transfer belongs to, null if there is no such transfer
+     */
+    public String meetingCode(String transferId) {
+        Transfer transfer = transferId == null ? null : transfers.get(transferId);
+        return transfer == null ? null : transfer.meetingCode;
+    }
+
+    public void control(FileTransferControl control, String sessionId) {
+        Transfer transfer = control.getTransferId() == null ? null : transfers.get(control.getTransferId());
+        if (transfer == null || control.getType() == null || control.getUserId() == null) {
+            return;
+        }
+        synchronized (transfer) {
+            transfer.touch();
+            switch (control.getType()) {
+                case ACCEPT -> accept(transfer, control, sessionId);
+                case CREDIT -> {
+                    Receiver receiver = transfer.receivers.get(control.getUserId());
+                    if (receiver != null) {
+                        receiver.credits += Math.max(0, control.getCredits());
+                    }
+                }
+                case CANCEL -> {
+                    if (control.getUserId() == transfer.senderId) {
+                        cancel(transfer);
+                        return;
+                    }
+                    transfer.receivers.remove(control.getUserId());
+                }
+                default -> {
+                    return;
+                }
+            }
+            pump(transfer);
+        }
+    }
+
+    /**
+     * Cancel what a closed session was sending and drop it as a receiver, telling the other side
+     */
+    public void disconnect(String sessionId) {
+        for (Transfer transfer : transfers.values()) {
+            synchronized (transfer) {
+                if (sessionId.equals(transfer.senderSession)) {
+                    log.debug("Sender of file transfer {} disconnected", transfer.id);
+                    cancel(transfer);
+                    continue;
+                }
+                List<Long> gone = new ArrayList<>();
+                transfer.receivers.forEach((userId, receiver) -> {
+                    if (sessionId.equals(receiver.session)) {
+                        gone.add(userId);
+                    }
+                });
+                if (gone.isEmpty()) {
+                    continue;
+                }
+                for (Long userId : gone) {
+                    transfer.receivers.remove(userId);
+                    FileTransferControl cancel = control(transfer, CANCEL, 0);
+                    cancel.setUserId(userId);
+                    sendControl(transfer.senderId, transfer.meetingCode, cancel);
+                }
+                pump(transfer);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.transfer.idle-timeout-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Transfer transfer : transfers.values()) {
+            synchronized (transfer) {
+                if (now - transfer.lastActivity < idleMillis) {
+                    continue;
+                }
+                if (transfer.completed && transfer.receivers.isEmpty()) {
+                    transfers.remove(transfer.id);
+                } else {
+                    log.info("File transfer {} in meeting {} timed out", transfer.id, transfer.meetingCode);
+                    cancel(transfer);
+                }
+            }
+        }
+    }
+
+    private void accept(Transfer transfer, FileTransferControl control, String sessionId) {
+        int from = Math.max(0, Math.min(control.getSeq(), transfer.chunkCount));
+        Receiver receiver = transfer.receivers.computeIfAbsent(control.getUserId(), id -> new Receiver());
+        receiver.session = sessionId;
+        receiver.nextSeq = from;
+        receiver.credits = Math.max(0, control.getCredits());
+
+        // Resuming before what is still buffered: the sender has to send those chunks again,
+        // and the grant shrinks back so the buffer stays within one window
+        if (from < transfer.chunkCount && !transfer.buffer.containsKey(from) && from <= transfer.highestReceived) {
+            transfer.grant = Math.min(transfer.chunkCount, from + window);
+            transfer.buffer.tailMap(transfer.grant).clear();
+            sendToSender(transfer, REWIND, from);
+            sendToSender(transfer, CREDIT, transfer.grant);
+        }
+    }
+
+    /**
+     * Deliver buffered chunks within each receiver's credit, drop what everyone has, then widen the grant
+     */
+    private void pump(Transfer transfer) {
+        List<Long> done = new ArrayList<>();
+        for (Map.Entry<Long, Receiver> entry : transfer.receivers.entrySet()) {
+            Receiver receiver = entry.getValue();
+            while (receiver.credits > 0) {
+                byte[] data = transfer.buffer.get(receiver.nextSeq);
+                if (data == null) {
+                    break;
+                }
+                sendChunk(transfer, entry.getKey(), receiver.nextSeq, data);
+                receiver.nextSeq++;
+                receiver.credits--;
+            }
+            if (receiver.nextSeq >= transfer.chunkCount) {
+                done.add(entry.getKey());
+            }
+        }
+        for (Long userId : done) {
+            transfer.receivers.remove(userId);
+            sendControl(userId, transfer.meetingCode, control(transfer, COMPLETE, transfer.chunkCount));
+        }
+
+        int lowest = transfer.lowestNeeded();
+        transfer.buffer.headMap(lowest).clear();
+
+        if (transfer.receivers.isEmpty() && !done.isEmpty()) {
+            // Everyone who accepted has the whole file; late joiners can still accept until it times out
+            transfer.completed = true;
+            sendToSender(transfer, COMPLETE, transfer.chunkCount);
+            return;
+        }
+        int grant = Math.min(transfer.chunkCount, lowest + window);
+        if (!transfer.receivers.isEmpty() && grant > transfer.grant) {
+            transfer.grant = grant;
+            sendToSender(transfer, CREDIT, grant);
+        }
+    }
+
+    private void cancel(Transfer transfer) {
+        transfers.remove(transfer.id);
+        transfer.buffer.clear();
+        sendToSender(transfer, CANCEL, 0);
+        for (Long userId : transfer.receivers.keySet()) {
+            sendControl(userId, transfer.meetingCode, control(transfer, CANCEL, 0));
+        }
+        transfer.receivers.clear();
+    }
+
+    private void sendChunk(Transfer transfer, Long userId, int seq, byte[] data) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(TRANSFER_ID_HEADER, transfer.id);
+        accessor.setNativeHeader(SEQ_HEADER, String.valueOf(seq));
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(userId.toString(),
+                "/topic/meeting." + transfer.meetingCode + ".file.chunk", data, accessor.getMessageHeaders());
+    }
+
+    private void sendToSender(Transfer transfer, String type, int seq) {
+        sendControl(transfer.senderId, transfer.meetingCode, control(transfer, type, seq));
+    }
+
+    private void sendControl(long userId, String meetingCode, FileTransferControl control) {
+        messagingTemplate.convertAndSendToUser(String.valueOf(userId),
+                "/topic/meeting." + meetingCode + ".file.control", control);
+    }
+
+    private static FileTransferControl control(Transfer transfer, String type, int seq) {
+        return FileTransferControl.builder()
+                .type(type)
+                .transferId(transfer.id)
+                .meetingCode(transfer.meetingCode)
+                .seq(seq)
+                .build();
+    }
+
+    private static final class Transfer {
+        final String id;
+        final String meetingCode;
+        final long senderId;
+        final int chunkSize;
+        final int chunkCount;
+        final TreeMap<Integer, byte[]> buffer = new TreeMap<>();
+        final Map<Long, Receiver> receivers = new HashMap<>();
+        String senderSession;
+        int grant;
+        int highestReceived = -1;
+        boolean completed;
+        long lastActivity = System.currentTimeMillis();
+
+        Transfer(FileTransfer offer, String senderSession) {
+            this.id = offer.getTransferId();
+            this.meetingCode = offer.getMeetingCode();
+            this.senderId = offer.getSenderId();
+            this.chunkSize = offer.getChunkSize();
+            this.chunkCount = offer.getChunkCount();
+            this.senderSession = senderSession;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * Smallest seq some receiver still waits for; everything below can be released
+         */
+        int lowestNeeded() {
+            int lowest = chunkCount;
+            for (Receiver receiver : receivers.values()) {
+                lowest = Math.min(lowest, receiver.nextSeq);
+            }
+            return receivers.isEmpty() ? Math.max(0, highestReceived + 1) : lowest;
+        }
+
+        int firstMissing() {
+            int seq = lowestNeeded();
+            while (buffer.containsKey(seq)) {
+                seq++;
+            }
+            return seq;
+        }
+    }
+
+    private static final class Receiver {
+        String session;
+        int nextSeq;
+        int credits;
+    }
+}
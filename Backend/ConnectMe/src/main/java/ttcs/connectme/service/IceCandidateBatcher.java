@@ -0,0 +1,172 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.webrtc.SignalBatch;
+import ttcs.connectme.dto.webrtc.SignalRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Coalesces trickle-ICE candidates per (from, target, meetingCode) into a single STOMP frame.
+ * A batch is flushed when the window elapses, when it reaches the maximum size,
+ * or right before an offer/answer between the same peers is forwarded.
+ */
+@Slf4j
+@Service
+public class IceCandidateBatcher {
+    public static final String ICE_CANDIDATE = "ice-candidate";
+    public static final String ICE_CANDIDATES = "ice-candidates";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConcurrentHashMap<BatchKey, Batch> pending = new ConcurrentHashMap<>();
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    private final Counter candidatesCounter;
+    private final Counter framesCounter;
+    private final Counter framesSavedCounter;
+    private final Timer addedLatency;
+
+    public IceCandidateBatcher(SimpMessagingTemplate messagingTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${signaling.ice.batching.enabled:true}") boolean enabled,
+                               @Value("${signaling.ice.batching.window-ms:25}") long windowMillis,
+                               @Value("${signaling.ice.batching.max-batch-size:16}") int maxBatchSize) {
+        this.messagingTemplate = messagingTemplate;
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("ice-batch-");
+        this.scheduler.initialize();
+
+        this.candidatesCounter = Counter.builder("signaling.ice.candidates")
+                .description("ICE candidates received on /meeting.signal")
+                .register(meterRegistry);
+        this.framesCounter = Counter.builder("signaling.ice.frames")
+                .description("STOMP frames sent to carry ICE candidates")
+                .register(meterRegistry);
+        this.framesSavedCounter = Counter.builder("signaling.ice.frames.saved")
+                .description("STOMP frames avoided by coalescing ICE candidates")
+                .register(meterRegistry);
+        this.addedLatency = Timer.builder("signaling.ice.batch.delay")
+                .description("Time the oldest candidate of a batch waited before being flushed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue an ICE candidate for its (from, target, meetingCode) batch
+     */
+    public void submit(SignalRequest request) {
+        candidatesCounter.increment();
+        BatchKey key = new BatchKey(request.getFrom(), request.getTargetUserId(), request.getMeetingCode());
+
+        if (!enabled || maxBatchSize == 1) {
+            send(key, List.of(request.getPayload()), System.nanoTime());
+            return;
+        }
+
+        Batch[] full = new Batch[1];
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                Batch created = new Batch(System.nanoTime());
+                created.future = scheduler.schedule(() -> expire(k, created),
+                        Instant.now().plusMillis(windowMillis));
+                batch = created;
+            }
+            batch.payloads.add(request.getPayload());
+            if (batch.payloads.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+
+        if (full[0] != null) {
+            full[0].future.cancel(false);
+            send(key, full[0].payloads, full[0].createdAt);
+        }
+    }
+
+    /**
+     * Flush candidates queued between two peers so they are delivered before the next offer/answer
+     */
+    public void flush(SignalRequest request) {
+        BatchKey key = new BatchKey(request.getFrom(), request.getTargetUserId(), request.getMeetingCode());
+        Batch batch = pending.remove(key);
+        if (batch != null) {
+            batch.future.cancel(false);
+            send(key, batch.payloads, batch.createdAt);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pending.forEach((key, batch) -> {
+            if (pending.remove(key, batch)) {
+                batch.future.cancel(false);
+                send(key, batch.payloads, batch.createdAt);
+            }
+        });
+        scheduler.shutdown();
+    }
+
+    private void expire(BatchKey key, Batch batch) {
+        if (pending.remove(key, batch)) {
+            send(key, batch.payloads, batch.createdAt);
+        }
+    }
+
+    private void send(BatchKey key, List<String> payloads, long createdAt) {
+        String destination = "/topic/meeting." + key.meetingCode() + ".signal";
+        try {
+            if (payloads.size() == 1) {
+                // A single candidate keeps the original frame shape
+                messagingTemplate.convertAndSendToUser(key.target(), destination,
+                        new SignalRequest(ICE_CANDIDATE, key.from(), key.target(), key.meetingCode(),
+                                payloads.get(0), null));
+            } else {
+                messagingTemplate.convertAndSendToUser(key.target(), destination,
+                        new SignalBatch(ICE_CANDIDATES, key.from(), key.target(), key.meetingCode(), payloads));
+            }
+        } catch (Exception e) {
+            log.warn("Cannot forward {} ICE candidate(s) from {} to {}: {}",
+                    payloads.size(), key.from(), key.target(), e.getMessage());
+        }
+
+        framesCounter.increment();
+        framesSavedCounter.increment(payloads.size() - 1);
+        addedLatency.record(Duration.ofNanos(System.nanoTime() - createdAt));
+    }
+
+    private record BatchKey(String from, String target, String meetingCode) {
+    }
+
+    private static final class Batch {
+        final long createdAt;
+        final List<String> payloads = new ArrayList<>();
+        ScheduledFuture<?> future;
+
+        Batch(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.entity.ImageSourceEntity;
+import ttcs.connectme.entity.ImageVariantEntity;
+import ttcs.connectme.enums.ImageVariant;
+import ttcs.connectme.repository.ImageSourceRepository;
+import ttcs.connectme.repository.ImageVariantRepository;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Size-bucketed derivatives (see {@link ImageVariant}) of uploaded images.
+ * Images are decoded and resized with ImageIO/Java2D on a bounded pool, off the request thread; each
+ * variant is written next to its original by a {@link Sink} supplied by the caller. Variants are only
+ * generated when the original is larger than their bound, so lookups fall back to the original.
+ * Every original that has been looked at is recorded as processed, also when it needed no variant or
+ * could not be decoded, so it is not fetched and decoded again on the next share.
+ * Work is best effort: a full queue or an undecodable image simply leaves the original as the only copy.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final ImageVariantRepository imageVariantRepository;
+    private final ImageSourceRepository imageSourceRepository;
+    private final ThreadPoolTaskExecutor executor;
+    private final boolean enabled;
+    private final long maxPixels;
+
+    private final Counter generated;
+    private final Counter skipped;
+
+    public ImageDerivativeService(ImageVariantRepository imageVariantRepository,
+                                  ImageSourceRepository imageSourceRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${image.derivatives.enabled:true}") boolean enabled,
+                                  @Value("${image.derivatives.parallelism:2}") int parallelism,
+                                  @Value("${image.derivatives.queue-capacity:64}") int queueCapacity,
+                                  @Value("${image.derivatives.max-pixels:50000000}") long maxPixels) {
+        this.imageVariantRepository = imageVariantRepository;
+        this.imageSourceRepository = imageSourceRepository;
+        this.enabled = enabled;
+        this.maxPixels = maxPixels;
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(Math.max(1, parallelism));
+        this.executor.setMaxPoolSize(Math.max(1, parallelism));
+        this.executor.setQueueCapacity(Math.max(0, queueCapacity));
+        this.executor.setThreadNamePrefix("image-derivative-");
+        this.executor.initialize();
+
+        this.generated = Counter.builder("image.derivatives.generated")
+                .description("Image variants generated and stored")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("image.derivatives.skipped")
+                .description("Images left without variants (queue full, too large or undecodable)")
+                .register(meterRegistry);
+    }
+
+    public boolean isImage(String contentType) {
+        return enabled && contentType != null && contentType.startsWith("image/");
+    }
+
+    /**
+     * Stored variants of an original, keyed by {@link ImageVariant#key()}
+     */
+    public Map<String, String> variants(String sourceKey) {
+        if (sourceKey == null) {
+            return Map.of();
+        }
+        Map<ImageVariant, String> byVariant = new EnumMap<>(ImageVariant.class);
+        imageVariantRepository.findBySourceKey(sourceKey).forEach(v -> byVariant.put(v.getVariant(), v.getUrl()));
+        Map<String, String> variants = new LinkedHashMap<>();
+        byVariant.forEach((variant, url) -> variants.put(variant.key(), url));
+        return variants;
+    }
+
+    /**
+     * Whether the variants read for an original are final: it has some, or it has been processed.
+     * Empty variants of an original still in the pipeline should not be cached.
+     */
+    public boolean isSettled(String sourceKey, Map<String, String> variants) {
+        return sourceKey == null || !variants.isEmpty() || imageSourceRepository.existsById(sourceKey);
+    }
+
+    /**
+     * URL of the smallest stored variant that is at least as large as the target, or the original
+     */
+    public static String smallestFitting(Map<String, String> variants, ImageVariant target, String originalUrl) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            String url = variants.get(variant.key());
+            if (variant.getMaxDimension() >= target.getMaxDimension() && url != null) {
+                return url;
+            }
+        }
+        return originalUrl;
+    }
+
+    /**
+     * Generate the variants of a local image in the background and call onReady with the stored ones.
+     * The file is owned by the job: it is deleted once read, or right away if the queue is full.
+     */
+    public void submit(String sourceKey, Path source, Sink sink, Consumer<Map<String, String>> onReady) {
+        if (!enqueue(sourceKey, () -> source, true, sink, onReady)) {
+            deleteQuietly(source);
+        }
+    }
+
+    /**
+     * Same as above for an original that is resolved on the worker (e.g. fetched from storage) and
+     * left in place afterwards
+     */
+    public void submit(String sourceKey, Source source, Sink sink, Consumer<Map<String, String>> onReady) {
+        enqueue(sourceKey, source, false, sink, onReady);
+    }
+
+    /**
+     * Delete stored variant rows and the processed marker of an original; the sink owner deletes the objects
+     */
+    public List<ImageVariantEntity> remove(String sourceKey) {
+        List<ImageVariantEntity> variants = imageVariantRepository.findBySourceKey(sourceKey);
+        if (!variants.isEmpty()) {
+            imageVariantRepository.deleteBySourceKey(sourceKey);
+        }
+        imageSourceRepository.deleteById(sourceKey);
+        return variants;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private boolean enqueue(String sourceKey, Source source, boolean ownsSource, Sink sink,
+                            Consumer<Map<String, String>> onReady) {
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(sourceKey, source.open(), ownsSource, sink);
+                    if (onReady != null) {
+                        onReady.accept(variants(sourceKey));
+                    }
+                } catch (Exception e) {
+                    skipped.increment();
+                    log.warn("Cannot generate variants of {}: {}", sourceKey, e.getMessage());
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            skipped.increment();
+            log.debug("Image derivative queue full, {} keeps only its original", sourceKey);
+            return false;
+        }
+    }
+
+    private void generate(String sourceKey, Path source, boolean ownsSource, Sink sink) throws IOException {
+        BufferedImage original;
+        try {
+            if (imageSourceRepository.existsById(sourceKey)) {
+                return;
+            }
+            original = read(source);
+        } finally {
+            if (ownsSource) {
+                deleteQuietly(source);
+            }
+        }
+        if (original == null) {
+            skipped.increment();
+            markProcessed(sourceKey);
+            return;
+        }
+
+        BufferedImage current = original;
+        // Largest first so every step scales down from the closest bigger image
+        for (int i = ImageVariant.values().length - 1; i >= 0; i--) {
+            ImageVariant variant = ImageVariant.values()[i];
+            if (Math.max(current.getWidth(), current.getHeight()) <= variant.getMaxDimension()) {
+                continue;
+            }
+            current = scale(current, variant.getMaxDimension());
+            boolean alpha = current.getColorModel().hasAlpha();
+            byte[] data = encode(current, alpha);
+            Stored stored = sink.store(variant, data, alpha ? "png" : "jpg");
+
+            try {
+                imageVariantRepository.save(ImageVariantEntity.builder()
+                        .sourceKey(sourceKey)
+                        .variant(variant)
+                        .storageKey(stored.storageKey())
+                        .url(stored.url())
+                        .width(current.getWidth())
+                        .height(current.getHeight())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+                generated.increment();
+            } catch (DataIntegrityViolationException e) {
+                // Same original processed twice concurrently; the stored object was overwritten in place
+                log.debug("Variant {} of {} already recorded", variant, sourceKey);
+            }
+        }
+        markProcessed(sourceKey);
+    }
+
+    private void markProcessed(String sourceKey) {
+        try {
+            imageSourceRepository.save(ImageSourceEntity.builder()
+                    .sourceKey(sourceKey)
+                    .processedAt(LocalDateTime.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("{} already marked processed", sourceKey);
+        }
+    }
+
+    /**
+     * Decode an image, subsampling very large ones while reading; null if it is not a readable image
+     */
+    private BufferedImage read(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > maxPixels) {
+                    log.debug("Skipping {}x{} image {}", width, height, source);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = (int) Math.max(1, Math.max(width, height) / (2L * ImageVariant.FULL.getMaxDimension()));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halve with bilinear filtering until within 2x of the bound, then scale the rest in one step
+     */
+    private static BufferedImage scale(BufferedImage source, int maxDimension) {
+        double ratio = (double) maxDimension / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            if (width < targetWidth * 2 || height < targetHeight * 2) {
+                width = targetWidth;
+                height = targetHeight;
+            }
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, boolean alpha) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete image source {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Local file holding the original
+     */
+    @FunctionalInterface
+    public interface Source {
+        Path open() throws IOException;
+    }
+
+    /**
+     * Writes one variant next to its original
+     */
+    @FunctionalInterface
+    public interface Sink {
+        Stored store(ImageVariant variant, byte[] data, String format) throws IOException;
+    }
+
+    public record Stored(String storageKey, String url) {
+    }
+}
@@ -0,0 +1,147 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes expired rows from invalidated_token; once a token has expired its revocation no longer matters.
+ * By default expired rows are deleted in batches of batch-size through the expiryTime index, each batch in
+ * its own short statement. With partitioned=true the table is expected to be range-partitioned by expiry
+ * day (see db/invalidated_token_partitioned.sql): partitions for the coming days are created ahead and
+ * a day is dropped as a whole once it is over.
+ */
+@Slf4j
+@Service
+public class InvalidatedTokenPurger {
+    private static final String DELETE_EXPIRED = "delete from invalidated_token " +
+            "where expiry_time < ? order by expiry_time limit ?";
+    private static final String COUNT_ROWS = "select count(*) from invalidated_token";
+    private static final String LIST_PARTITIONS = "select partition_name, partition_description " +
+            "from information_schema.partitions " +
+            "where table_schema = database() and table_name = 'invalidated_token' and partition_name is not null";
+    private static final String MAX_PARTITION = "pmax";
+    // MySQL TO_DAYS('1970-01-01')
+    private static final long TO_DAYS_EPOCH = 719528;
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean partitioned;
+    private final int batchSize;
+    private final int daysAhead;
+
+    private final AtomicLong tableRows = new AtomicLong();
+    private final Counter purgedRows;
+    private final Counter droppedPartitions;
+    private final Timer purgeTimer;
+
+    public InvalidatedTokenPurger(JdbcTemplate jdbcTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${token.revocation.purge.partitioned:false}") boolean partitioned,
+                                  @Value("${token.revocation.purge.batch-size:1000}") int batchSize,
+                                  @Value("${token.revocation.purge.days-ahead:3}") int daysAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitioned = partitioned;
+        this.batchSize = Math.max(1, batchSize);
+        this.daysAhead = Math.max(1, daysAhead);
+
+        Gauge.builder("auth.revocation.table.rows", tableRows, AtomicLong::get)
+                .description("Rows in invalidated_token after the last purge")
+                .register(meterRegistry);
+        this.purgedRows = Counter.builder("auth.revocation.purged")
+                .description("Expired rows deleted from invalidated_token")
+                .register(meterRegistry);
+        this.droppedPartitions = Counter.builder("auth.revocation.partitions.dropped")
+                .description("Expired day partitions dropped from invalidated_token")
+                .register(meterRegistry);
+        this.purgeTimer = Timer.builder("auth.revocation.purge")
+                .description("Time spent purging expired rows from invalidated_token")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${token.revocation.purge.interval-ms:3600000}",
+            initialDelayString = "${token.revocation.purge.initial-delay-ms:60000}")
+    public void purge() {
+        try {
+            purgeTimer.record(() -> {
+                if (!partitioned || !rotatePartitions()) {
+                    deleteExpired();
+                }
+            });
+            tableRows.set(jdbcTemplate.queryForObject(COUNT_ROWS, Long.class));
+        } catch (Exception e) {
+            log.warn("Cannot purge invalidated tokens: {}", e.getMessage());
+        }
+    }
+
+    private void deleteExpired() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_EXPIRED, now, batchSize);
+            purgedRows.increment(deleted);
+        } while (deleted == batchSize);
+    }
+
+    /**
+     * Drop day partitions that are over and make sure the coming days have one;
+     * false if the table is not partitioned, so the caller deletes rows instead
+     */
+    private boolean rotatePartitions() {
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(LIST_PARTITIONS);
+        if (partitions.isEmpty()) {
+            log.warn("token.revocation.purge.partitioned is set but invalidated_token is not partitioned");
+            return false;
+        }
+
+        LocalDate today = LocalDate.now();
+        long latestBound = 0;
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("partition_name");
+            String description = String.valueOf(partition.get("partition_description"));
+            if (MAX_PARTITION.equals(name) || "MAXVALUE".equalsIgnoreCase(description)) {
+                continue;
+            }
+            long bound = Long.parseLong(description);
+            // Every row in it expired before today started
+            if (bound <= toDays(today)) {
+                jdbcTemplate.execute("alter table invalidated_token drop partition " + name);
+                droppedPartitions.increment();
+            } else {
+                latestBound = Math.max(latestBound, bound);
+            }
+        }
+
+        List<String> added = new ArrayList<>();
+        for (LocalDate day = today; !day.isAfter(today.plusDays(daysAhead)); day = day.plusDays(1)) {
+            if (toDays(day.plusDays(1)) > latestBound) {
+                added.add("partition " + PARTITION_NAME.format(day) +
+                        " values less than (" + toDays(day.plusDays(1)) + ")");
+            }
+        }
+        if (!added.isEmpty()) {
+            added.add("partition " + MAX_PARTITION + " values less than maxvalue");
+            jdbcTemplate.execute("alter table invalidated_token reorganize partition " + MAX_PARTITION +
+                    " into (" + String.join(", ", added) + ")");
+        }
+        return true;
+    }
+
+    private static long toDays(LocalDate day) {
+        return day.toEpochDay() + TO_DAYS_EPOCH;
+    }
+}
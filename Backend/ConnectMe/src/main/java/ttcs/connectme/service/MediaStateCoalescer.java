@@ -0,0 +1,175 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.webrtc.MediaStateChange;
+import ttcs.connectme.dto.webrtc.MediaStateDelta;
+import ttcs.connectme.dto.webrtc.MediaStateUpdate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Collapses media-state updates of a room over a short window into one delta.
+ * The room registry is updated immediately; at the end of the window only participants whose
+ * final flags differ from the state at the start of the window are published, together with
+ * the next room version. Clients that see a version gap re-read the roster.
+ * Versions are node-local: with the broker relay each node numbers its own deltas.
+ */
+@Slf4j
+@Service
+public class MediaStateCoalescer {
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RoomRegistry roomRegistry;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final long windowMillis;
+
+    private final Counter updatesCounter;
+    private final Counter deltasCounter;
+
+    public MediaStateCoalescer(SimpMessagingTemplate messagingTemplate,
+                               RoomRegistry roomRegistry,
+                               MeterRegistry meterRegistry,
+                               @Value("${signaling.media.coalesce-window-ms:100}") long windowMillis) {
+        this.messagingTemplate = messagingTemplate;
+        this.roomRegistry = roomRegistry;
+        this.windowMillis = windowMillis;
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("media-state-");
+        this.scheduler.initialize();
+
+        this.updatesCounter = Counter.builder("signaling.media.updates")
+                .description("Media state updates received on /meeting.media.state")
+                .register(meterRegistry);
+        this.deltasCounter = Counter.builder("signaling.media.deltas")
+                .description("Media state deltas broadcast to rooms")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Apply an update to the room registry and queue it for the room's next delta
+     */
+    public void submit(MediaStateUpdate update, int flag) {
+        updatesCounter.increment();
+        String meetingCode = update.getMeetingCode();
+        long userId = update.getUserId();
+
+        if (windowMillis <= 0) {
+            Window window = new Window();
+            window.record(userId, roomRegistry.flagsOf(meetingCode, userId), flag, update.isEnabled());
+            roomRegistry.updateMedia(meetingCode, userId, flag, update.isEnabled());
+            publish(meetingCode, window);
+            return;
+        }
+
+        windows.compute(meetingCode, (code, window) -> {
+            if (window == null) {
+                Window created = new Window();
+                created.future = scheduler.schedule(() -> expire(code, created),
+                        Instant.now().plusMillis(windowMillis));
+                window = created;
+            }
+            // Baseline and registry update happen under the same lock so concurrent toggles stay ordered
+            window.record(userId, roomRegistry.flagsOf(code, userId), flag, update.isEnabled());
+            roomRegistry.updateMedia(code, userId, flag, update.isEnabled());
+            return window;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        windows.forEach((code, window) -> {
+            if (windows.remove(code, window)) {
+                window.future.cancel(false);
+                publish(code, window);
+            }
+        });
+        scheduler.shutdown();
+    }
+
+    private void expire(String meetingCode, Window window) {
+        if (windows.remove(meetingCode, window)) {
+            publish(meetingCode, window);
+        }
+    }
+
+    private void publish(String meetingCode, Window window) {
+        List<MediaStateChange> changes = window.changes();
+        if (changes.isEmpty()) {
+            return;
+        }
+        long version = roomRegistry.nextVersion(meetingCode);
+        if (version == 0) {
+            // The room is gone, nobody is left to apply the delta
+            return;
+        }
+        MediaStateDelta delta = new MediaStateDelta(meetingCode, version, changes);
+        try {
+            messagingTemplate.convertAndSend("/topic/meeting." + meetingCode + ".media.state", delta);
+            deltasCounter.increment();
+        } catch (Exception e) {
+            log.warn("Cannot broadcast media state delta v{} for room {}: {}",
+                    delta.getVersion(), meetingCode, e.getMessage());
+        }
+    }
+
+    private static final class Window {
+        final Map<Long, Pending> pending = new LinkedHashMap<>();
+        ScheduledFuture<?> future;
+
+        void record(long userId, int currentFlags, int flag, boolean enabled) {
+            Pending entry = pending.computeIfAbsent(userId, id -> new Pending(currentFlags));
+            entry.touched |= flag;
+            entry.flags = enabled ? entry.flags | flag : entry.flags & ~flag;
+        }
+
+        List<MediaStateChange> changes() {
+            List<MediaStateChange> changes = new ArrayList<>(pending.size());
+            pending.forEach((userId, entry) -> {
+                int changed = entry.changed();
+                if (changed != 0) {
+                    changes.add(new MediaStateChange(userId,
+                            flag(changed, entry.flags, RoomRegistry.AUDIO),
+                            flag(changed, entry.flags, RoomRegistry.VIDEO),
+                            flag(changed, entry.flags, RoomRegistry.SCREEN)));
+                }
+            });
+            return changes;
+        }
+
+        private static Boolean flag(int changed, int flags, int flag) {
+            return (changed & flag) == 0 ? null : (flags & flag) != 0;
+        }
+    }
+
+    private static final class Pending {
+        // -1 when the participant is not known locally, every touched flag is then published
+        final int baseline;
+        int flags;
+        int touched;
+
+        Pending(int baseline) {
+            this.baseline = baseline;
+            this.flags = Math.max(baseline, 0);
+        }
+
+        int changed() {
+            return baseline < 0 ? touched : (baseline ^ flags) & touched;
+        }
+    }
+}
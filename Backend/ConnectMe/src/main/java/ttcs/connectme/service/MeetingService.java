@@ -33,6 +33,9 @@ public class MeetingService {
     private final MeetingUserRepository meetingUserRepository;
     private final MeetingMapper meetingMapper;
     private final MeetingCodeGenerator codeGenerator;
+    private final RoomRegistry roomRegistry;
+    private final RoomSnapshotService roomSnapshotService;
+    private final ChatHistoryService chatHistoryService;
 
     private String generateUniqueMeetingCode() {
         String code;
@@ -114,6 +117,7 @@ public class MeetingService {
             meeting.setActualEnd(now.plusMinutes(30));
         }
         meeting.setMeetingStatus(MeetingStatus.ONGOING);
+        roomSnapshotService.evict(meeting.getMeetingCode());
         MeetingEntity updatedMeeting = meetingRepository.save(meeting);
         MeetingResponse response = meetingMapper.toResponse(updatedMeeting);
         response.setHostId(meeting.getHost().getId());
@@ -145,6 +149,7 @@ public class MeetingService {
         }
 
         meeting.setMeetingStatus(MeetingStatus.ONGOING);
+        roomSnapshotService.evict(meeting.getMeetingCode());
         MeetingEntity updatedMeeting = meetingRepository.save(meeting);
 
         MeetingResponse response = meetingMapper.toResponse(updatedMeeting);
@@ -171,6 +176,9 @@ public class MeetingService {
         meeting.setMeetingStatus(MeetingStatus.ENDED);
         meeting.setActualEnd(LocalDateTime.now());
         meeting.setCurrentParticipants(0);
+        roomRegistry.evictRoom(meeting.getMeetingCode());
+        roomSnapshotService.evict(meeting.getMeetingCode());
+        chatHistoryService.evict(meeting.getMeetingCode());
 
         MeetingEntity updatedMeeting = meetingRepository.save(meeting);
         MeetingResponse response = meetingMapper.toResponse(updatedMeeting);
@@ -197,6 +205,9 @@ public class MeetingService {
         meeting.setMeetingStatus(MeetingStatus.ENDED);
         meeting.setActualEnd(LocalDateTime.now());
         meeting.setCurrentParticipants(0);
+        roomRegistry.evictRoom(meeting.getMeetingCode());
+        roomSnapshotService.evict(meeting.getMeetingCode());
+        chatHistoryService.evict(meeting.getMeetingCode());
 
         MeetingEntity updatedMeeting = meetingRepository.save(meeting);
         MeetingResponse response = meetingMapper.toResponse(updatedMeeting);
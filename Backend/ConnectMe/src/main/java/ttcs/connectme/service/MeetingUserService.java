@@ -1,9 +1,11 @@
 package ttcs.connectme.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ttcs.connectme.dto.request.MeetingUserRequest;
 import ttcs.connectme.dto.response.MeetingUserResponse;
 import ttcs.connectme.dto.webrtc.MediaStateUpdate;
@@ -12,6 +14,7 @@ import ttcs.connectme.entity.MeetingUserEntity;
 import ttcs.connectme.entity.UserEntity;
 import ttcs.connectme.enums.ErrorCode;
 import ttcs.connectme.enums.InvitationStatus;
+import ttcs.connectme.enums.Role;
 import ttcs.connectme.exception.AppException;
 import ttcs.connectme.mapper.MeetingUserMapper;
 import ttcs.connectme.repository.MeetingRepository;
@@ -19,6 +22,7 @@ import ttcs.connectme.repository.MeetingUserRepository;
 import ttcs.connectme.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +34,7 @@ public class MeetingUserService {
     MeetingUserMapper meetingUserMapper;
     MeetingRepository meetingRepository;
     UserRepository userRepository;
+    EntityManager entityManager;
 
     public MeetingUserResponse addUser(MeetingUserRequest request, String meetingCode, Long userId) {
         // Kiểm tra dữ liệu đầu vào
@@ -106,6 +111,64 @@ public class MeetingUserService {
         }
     }
 
+    /**
+     * Make the user an accepted, online participant of a meeting the caller has already looked up.
+     * A user already in the meeting costs one read (and a write if presence marked them offline);
+     * otherwise the row is revived or inserted.
+     */
+    @Transactional
+    public void enter(String meetingCode, Long userId) {
+        Optional<MeetingUserEntity> existing = meetingUserRepository.findByMeetingMeetingCodeAndUserId(meetingCode, userId);
+        LocalDateTime now = LocalDateTime.now();
+        if (existing.isPresent() && !Boolean.TRUE.equals(existing.get().getIsDeleted())) {
+            MeetingUserEntity member = existing.get();
+            if (!Boolean.TRUE.equals(member.getIsOnline())) {
+                // Timed out by presence but still a participant
+                member.setIsOnline(true);
+                member.setJoinTime(now);
+                member.setLastHeartbeat(now);
+                meetingUserRepository.save(member);
+            }
+            return;
+        }
+
+        MeetingUserEntity meetingUser;
+        if (existing.isPresent()) {
+            meetingUser = existing.get();
+            meetingUser.setIsDeleted(false);
+            meetingUser.setDeletedAt(null);
+            meetingUser.setDeletedBy(null);
+            meetingUser.setRole(Role.PARTICIPANT);
+        } else {
+            if (!userRepository.existsByIdAndIsDeletedFalse(userId)) {
+                throw new AppException(ErrorCode.USER_NOT_FOUND);
+            }
+            meetingUser = MeetingUserEntity.builder()
+                    .meeting(entityManager.getReference(MeetingEntity.class, meetingCode))
+                    .user(userRepository.getReferenceById(userId))
+                    .role(Role.PARTICIPANT)
+                    .build();
+            meetingUser.setIsDeleted(false);
+        }
+        meetingUser.setInvitationStatus(InvitationStatus.ACCEPTED);
+        meetingUser.setIsOnline(true);
+        meetingUser.setIsMuted(false);
+        meetingUser.setIsCameraOn(true);
+        meetingUser.setIsScreenSharing(false);
+        meetingUser.setIsSpeaking(false);
+        meetingUser.setJoinTime(now);
+        meetingUser.setLastHeartbeat(now);
+        meetingUserRepository.save(meetingUser);
+    }
+
+    /**
+     * Whether the user is a current participant of the meeting
+     */
+    public boolean isMember(String meetingCode, Long userId) {
+        return meetingCode != null && userId != null &&
+                meetingUserRepository.existsByMeetingMeetingCodeAndUserIdAndIsDeletedFalse(meetingCode, userId);
+    }
+
     public MeetingUserResponse updateById(Long id, MeetingUserRequest request) {
         MeetingUserEntity meetingUser = meetingUserRepository.findByIdAndIsDeletedFalse(id)
                 .orElseThrow(() -> new AppException(ErrorCode.MEETING_USER_NOT_FOUND));
@@ -145,6 +208,26 @@ public class MeetingUserService {
         meetingUserRepository.save(meetingUser);
     }
 
+    /**
+     * Mark several participants of a meeting offline with a single update. They stay participants, and
+     * keep their last heartbeat, so a session that was only slow can join again.
+     */
+    @Transactional
+    public int markLeft(String meetingCode, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        return meetingUserRepository.markLeft(meetingCode, userIds, LocalDateTime.now());
+    }
+
+    /**
+     * Put a participant marked offline back online; no-op for one who is online already
+     */
+    @Transactional
+    public void markOnline(String meetingCode, Long userId) {
+        meetingUserRepository.markOnline(meetingCode, userId, LocalDateTime.now());
+    }
+
     public List<MeetingUserResponse> getAllByMeetingId(String meetingCode) {
         return meetingUserRepository.getAllByMeetingMeetingCodeAndIsDeletedFalse(meetingCode)
                 .stream().map(meetingUserMapper::toResponse).toList();
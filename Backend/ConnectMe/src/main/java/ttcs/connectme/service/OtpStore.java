@@ -0,0 +1,118 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One-time codes sent by email, kept in memory until they expire.
+ * Only an HMAC of each code (keyed per process and by email) is stored. A code allows max-attempts
+ * wrong guesses and is then discarded; issuing a new code replaces the previous one.
+ */
+@Service
+public class OtpStore {
+    private static final int CODE_BOUND = 1_000_000;
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] key = new byte[32];
+    private final Map<String, Entry> codes = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxAttempts;
+
+    public OtpStore(MeterRegistry meterRegistry,
+                    @Value("${otp.ttl-ms:300000}") long ttlMillis,
+                    @Value("${otp.max-attempts:5}") int maxAttempts) {
+        this.ttlMillis = ttlMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        random.nextBytes(key);
+        meterRegistry.gaugeMapSize("auth.otp.pending", Collections.emptyList(), codes);
+    }
+
+    /**
+     * New code for the email, replacing any pending one; the caller sends it
+     */
+    public String issue(String email) {
+        String code = String.format("%06d", random.nextInt(CODE_BOUND));
+        String normalized = normalize(email);
+        codes.put(normalized, new Entry(hash(normalized, code), System.currentTimeMillis() + ttlMillis));
+        return code;
+    }
+
+    /**
+     * Whether the code is the pending one for the email, leaving it pending
+     */
+    public boolean verify(String email, String code) {
+        return check(normalize(email), code, false);
+    }
+
+    /**
+     * Same as {@link #verify} but uses the code up on success
+     */
+    public boolean consume(String email, String code) {
+        return check(normalize(email), code, true);
+    }
+
+    @Scheduled(fixedDelayString = "${otp.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        codes.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    private boolean check(String email, String code, boolean consume) {
+        Entry entry = codes.get(email);
+        if (entry == null || code == null) {
+            return false;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            codes.remove(email, entry);
+            return false;
+        }
+        if (!MessageDigest.isEqual(entry.hash, hash(email, code.trim()))) {
+            synchronized (entry) {
+                if (++entry.failures >= maxAttempts) {
+                    codes.remove(email, entry);
+                }
+            }
+            return false;
+        }
+        // Only one caller gets to use a code up
+        return !consume || codes.remove(email, entry);
+    }
+
+    private byte[] hash(String email, String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal((email + ':' + code).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        final byte[] hash;
+        final long expiresAt;
+        int failures;
+
+        Entry(byte[] hash, long expiresAt) {
+            this.hash = hash;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import ttcs.connectme.dto.webrtc.UserLeftEvent;
+import ttcs.connectme.dto.webrtc.UsersLeftEvent;
+import ttcs.connectme.utils.TimingWheel;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the last inbound activity (any frame, including STOMP heartbeats) of every session.
+ * Touching a session is a single volatile write; each session sits in a timing wheel once and is
+ * only re-inserted when its slot comes up and it has been active since. Sessions silent for longer
+ * than the timeout are removed from their room, then each room gets one DB update marking them offline
+ * (they stay participants and can join again) and one user.left.
+ */
+@Slf4j
+@Service
+public class PresenceEngine implements ChannelInterceptor {
+    private final Map<String, Presence> sessions = new ConcurrentHashMap<>();
+    private final RoomRegistry roomRegistry;
+    private final MeetingUserService meetingUserService;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final TimingWheel<String> wheel;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final long timeoutMillis;
+
+    private final Counter expiredCounter;
+
+    public PresenceEngine(RoomRegistry roomRegistry,
+                          MeetingUserService meetingUserService,
+                          ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${presence.tick-ms:1000}") long tickMillis,
+                          @Value("${presence.wheel-size:64}") int wheelSize,
+                          @Value("${presence.timeout-ms:30000}") long timeoutMillis) {
+        this.roomRegistry = roomRegistry;
+        this.meetingUserService = meetingUserService;
+        this.messagingTemplate = messagingTemplate;
+        this.timeoutMillis = timeoutMillis;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("presence-");
+        this.scheduler.initialize();
+        this.scheduler.scheduleAtFixedRate(this::tick, Duration.ofMillis(tickMillis));
+
+        Gauge.builder("presence.sessions", sessions, Map::size)
+                .description("STOMP sessions tracked by the presence engine")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("presence.expired")
+                .description("Participants removed after missing heartbeats")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        long now = System.currentTimeMillis();
+        Presence presence = sessions.get(sessionId);
+        if (presence != null) {
+            presence.lastSeen = now;
+        } else if (sessions.putIfAbsent(sessionId, new Presence(now)) == null) {
+            synchronized (wheel) {
+                wheel.add(sessionId, now + timeoutMillis);
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // The wheel entry is dropped lazily when its slot comes up
+        sessions.remove(event.getSessionId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    void tick() {
+        long now = System.currentTimeMillis();
+        List<String> stale = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(now, sessionId -> {
+                Presence presence = sessions.get(sessionId);
+                if (presence == null) {
+                    return;
+                }
+                long deadline = presence.lastSeen + timeoutMillis;
+                if (deadline > now) {
+                    wheel.add(sessionId, deadline);
+                } else {
+                    stale.add(sessionId);
+                }
+            });
+        }
+        if (!stale.isEmpty()) {
+            try {
+                expire(stale);
+            } catch (Exception e) {
+                log.warn("Error expiring {} stale session(s): {}", stale.size(), e.getMessage());
+            }
+        }
+    }
+
+    private void expire(List<String> stale) {
+        Map<String, List<Long>> leftByRoom = new HashMap<>();
+        for (String sessionId : stale) {
+            sessions.remove(sessionId);
+            RoomRegistry.SessionBinding binding = roomRegistry.removeSession(sessionId);
+            if (binding != null) {
+                leftByRoom.computeIfAbsent(binding.meetingCode(), code -> new ArrayList<>()).add(binding.userId());
+            }
+        }
+
+        SimpMessagingTemplate template = messagingTemplate.getIfAvailable();
+        leftByRoom.forEach((meetingCode, userIds) -> {
+            log.info("Removing {} ghost participant(s) from meeting {}: {}", userIds.size(), meetingCode, userIds);
+            expiredCounter.increment(userIds.size());
+            try {
+                meetingUserService.markLeft(meetingCode, userIds);
+            } catch (Exception e) {
+                log.warn("Cannot mark participants {} as left in meeting {}: {}", userIds, meetingCode, e.getMessage());
+            }
+            if (template == null) {
+                return;
+            }
+            String destination = "/topic/meeting." + meetingCode + ".user.left";
+            if (userIds.size() == 1) {
+                template.convertAndSend(destination, new UserLeftEvent(userIds.get(0), meetingCode));
+            } else {
+                template.convertAndSend(destination, new UsersLeftEvent(userIds, meetingCode));
+            }
+        });
+    }
+
+    private static final class Presence {
+        volatile long lastSeen;
+
+        Presence(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package ttcs.connectme.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.webrtc.ParticipantState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Node-local view of who is connected to which meeting room.
+ * Rooms are keyed by meetingCode, participants are kept in a primitive long table
+ * together with their STOMP session id and media flags, so roster reads never touch the DB.
+ * Every change to a room, and to the session bindings of its participants, happens inside one
+ * compute on the room's entry, so it cannot interleave with an eviction or another change to that room.
+ */
+@Slf4j
+@Service
+public class RoomRegistry {
+    public static final int AUDIO = 1;
+    public static final int VIDEO = 1 << 1;
+    public static final int SCREEN = 1 << 2;
+
+    private static final int DEFAULT_FLAGS = AUDIO | VIDEO;
+
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SessionBinding> sessions = new ConcurrentHashMap<>();
+    // Highest room version seeded or issued on this node
+    private final AtomicLong versionClock = new AtomicLong();
+
+    /**
+     * Register a user in a room. A second join from a new session replaces the old session binding.
+     */
+    public void join(String meetingCode, long userId, String sessionId) {
+        SessionBinding binding = new SessionBinding(meetingCode, userId);
+        rooms.compute(meetingCode, (code, room) -> {
+            if (room == null) {
+                room = new Room();
+                room.version = seedVersion();
+            }
+            String replaced = room.put(userId, sessionId);
+            if (replaced != null && !replaced.equals(sessionId)) {
+                sessions.remove(replaced, binding);
+            }
+            if (sessionId != null) {
+                sessions.put(sessionId, binding);
+            }
+            return room;
+        });
+    }
+
+    /**
+     * Remove a user from a room, dropping the room once it is empty
+     */
+    public boolean leave(String meetingCode, long userId) {
+        boolean[] found = new boolean[1];
+        rooms.computeIfPresent(meetingCode, (code, room) -> {
+            int slot = room.indexOf(userId);
+            if (slot >= 0) {
+                found[0] = true;
+                String removed = room.removeAt(slot);
+                if (removed != null) {
+                    sessions.remove(removed, new SessionBinding(code, userId));
+                }
+            }
+            return room.isEmpty() ? null : room;
+        });
+        return found[0];
+    }
+
+    /**
+     * Remove whatever participant is bound to a closed STOMP session.
+     * Returns null if the session never joined a room or was already superseded by a newer one.
+     */
+    public SessionBinding removeSession(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        SessionBinding binding = sessions.get(sessionId);
+        if (binding == null) {
+            return null;
+        }
+
+        boolean[] removed = new boolean[1];
+        rooms.compute(binding.meetingCode(), (code, room) -> {
+            sessions.remove(sessionId, binding);
+            if (room == null) {
+                return null;
+            }
+            int slot = room.indexOf(binding.userId());
+            if (slot >= 0 && sessionId.equals(room.sessionAt(slot))) {
+                room.removeAt(slot);
+                removed[0] = true;
+            }
+            return room.isEmpty() ? null : room;
+        });
+        return removed[0] ? binding : null;
+    }
+
+    /**
+     * Refresh the session bound to a participant who is already in the room (e.g. after a reconnect).
+     * Unknown participants are not added.
+     */
+    public boolean touch(String meetingCode, long userId, String sessionId) {
+        if (sessionId == null) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        rooms.computeIfPresent(meetingCode, (code, room) -> {
+            int slot = room.indexOf(userId);
+            if (slot < 0) {
+                return room;
+            }
+            found[0] = true;
+            String previous = room.sessionAt(slot);
+            if (!sessionId.equals(previous)) {
+                room.setSessionAt(slot, sessionId);
+                SessionBinding binding = new SessionBinding(code, userId);
+                if (previous != null) {
+                    sessions.remove(previous, binding);
+                }
+                sessions.put(sessionId, binding);
+            }
+            return room;
+        });
+        return found[0];
+    }
+
+    public boolean updateMedia(String meetingCode, long userId, int flag, boolean enabled) {
+        boolean[] found = new boolean[1];
+        rooms.computeIfPresent(meetingCode, (code, room) -> {
+            int slot = room.indexOf(userId);
+            if (slot >= 0) {
+                room.setFlag(slot, flag, enabled);
+                found[0] = true;
+            }
+            return room;
+        });
+        return found[0];
+    }
+
+    /**
+     * Media flags of a participant, or -1 if they are not in the room
+     */
+    public int flagsOf(String meetingCode, long userId) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return -1;
+        }
+        synchronized (room) {
+            int slot = room.indexOf(userId);
+            return slot < 0 ? -1 : room.flagAt(slot);
+        }
+    }
+
+    /**
+     * Version of the last media-state delta published for a room, 0 if the room does not exist.
+     * A new room starts from the current time in microseconds, never below a version issued before,
+     * so a room evicted and created again (or a restarted node) continues above what clients hold.
+     */
+    public long version(String meetingCode) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return 0;
+        }
+        synchronized (room) {
+            return room.version;
+        }
+    }
+
+    /**
+     * Advance the room version for a new media-state delta. Returns 0 if the room no longer exists.
+     */
+    public long nextVersion(String meetingCode) {
+        long[] next = new long[1];
+        rooms.computeIfPresent(meetingCode, (code, room) -> {
+            synchronized (room) {
+                next[0] = ++room.version;
+            }
+            return room;
+        });
+        if (next[0] > 0) {
+            versionClock.accumulateAndGet(next[0], Math::max);
+        }
+        return next[0];
+    }
+
+    private long seedVersion() {
+        return versionClock.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis() * 1000));
+    }
+
+    public boolean contains(String meetingCode, long userId) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return false;
+        }
+        synchronized (room) {
+            return room.indexOf(userId) >= 0;
+        }
+    }
+
+    public int size(String meetingCode) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return 0;
+        }
+        synchronized (room) {
+            return room.size();
+        }
+    }
+
+    public List<ParticipantState> roster(String meetingCode) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return Collections.emptyList();
+        }
+        synchronized (room) {
+            return room.snapshot();
+        }
+    }
+
+    /**
+     * Roster and room version read under one lock, so deltas newer than the version apply cleanly on top
+     */
+    public RosterSnapshot snapshot(String meetingCode) {
+        Room room = rooms.get(meetingCode);
+        if (room == null) {
+            return new RosterSnapshot(Collections.emptyList(), 0);
+        }
+        synchronized (room) {
+            return new RosterSnapshot(room.snapshot(), room.version);
+        }
+    }
+
+    public SessionBinding findSession(String sessionId) {
+        return sessionId == null ? null : sessions.get(sessionId);
+    }
+
+    /**
+     * Drop a room and all of its session bindings, e.g. when the meeting has ended
+     */
+    public void evictRoom(String meetingCode) {
+        boolean[] evicted = new boolean[1];
+        rooms.computeIfPresent(meetingCode, (code, room) -> {
+            // Sessions that moved on to another room keep that binding
+            room.forEachSession(sessionId -> sessions.computeIfPresent(sessionId,
+                    (id, binding) -> binding.meetingCode().equals(code) ? null : binding));
+            evicted[0] = true;
+            return null;
+        });
+        if (evicted[0]) {
+            log.debug("Evicted room {}", meetingCode);
+        }
+    }
+
+    public record SessionBinding(String meetingCode, long userId) {
+    }
+
+    public record RosterSnapshot(List<ParticipantState> participants, long version) {
+    }
+
+    /**
+     * Open-addressing table of userId -> (sessionId, media flags) with linear probing.
+     * userId 0 marks a free slot; database ids start at 1.
+     */
+    static final class Room {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private long[] userIds = new long[INITIAL_CAPACITY];
+        private String[] sessionIds = new String[INITIAL_CAPACITY];
+        private byte[] flags = new byte[INITIAL_CAPACITY];
+        private int size;
+        private long version;
+
+        synchronized String put(long userId, String sessionId) {
+            if (userId == 0) {
+                throw new IllegalArgumentException("userId must not be 0");
+            }
+            int slot = indexOf(userId);
+            if (slot >= 0) {
+                String previous = sessionIds[slot];
+                sessionIds[slot] = sessionId;
+                return previous;
+            }
+
+            if ((size + 1) * 4 > userIds.length * 3) {
+                resize(userIds.length << 1);
+            }
+            insert(userId, sessionId, (byte) DEFAULT_FLAGS);
+            size++;
+            return null;
+        }
+
+        synchronized int indexOf(long userId) {
+            int mask = userIds.length - 1;
+            int i = slotOf(userId, mask);
+            while (userIds[i] != 0) {
+                if (userIds[i] == userId) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        synchronized String sessionAt(int slot) {
+            return sessionIds[slot];
+        }
+
+        synchronized void setSessionAt(int slot, String sessionId) {
+            sessionIds[slot] = sessionId;
+        }
+
+        synchronized void setFlag(int slot, int flag, boolean enabled) {
+            flags[slot] = (byte) (enabled ? flags[slot] | flag : flags[slot] & ~flag);
+        }
+
+        synchronized int flagAt(int slot) {
+            return flags[slot];
+        }
+
+        /**
+         * Remove the entry at slot using backward-shift deletion so no tombstones are left behind
+         */
+        synchronized String removeAt(int slot) {
+            String removed = sessionIds[slot];
+            int mask = userIds.length - 1;
+            int gap = slot;
+            int i = slot;
+            while (true) {
+                i = (i + 1) & mask;
+                long key = userIds[i];
+                if (key == 0) {
+                    break;
+                }
+                int ideal = slotOf(key, mask);
+                if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                    userIds[gap] = key;
+                    sessionIds[gap] = sessionIds[i];
+                    flags[gap] = flags[i];
+                    gap = i;
+                }
+            }
+            userIds[gap] = 0;
+            sessionIds[gap] = null;
+            flags[gap] = 0;
+            size--;
+            return removed;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized List<ParticipantState> snapshot() {
+            List<ParticipantState> result = new ArrayList<>(size);
+            for (int i = 0; i < userIds.length; i++) {
+                if (userIds[i] != 0) {
+                    int f = flags[i];
+                    result.add(new ParticipantState(userIds[i],
+                            (f & AUDIO) != 0, (f & VIDEO) != 0, (f & SCREEN) != 0));
+                }
+            }
+            return result;
+        }
+
+        synchronized void forEachSession(Consumer<String> action) {
+            for (int i = 0; i < userIds.length; i++) {
+                if (userIds[i] != 0 && sessionIds[i] != null) {
+                    action.accept(sessionIds[i]);
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = userIds;
+            String[] oldSessions = sessionIds;
+            byte[] oldFlags = flags;
+
+            userIds = new long[capacity];
+            sessionIds = new String[capacity];
+            flags = new byte[capacity];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0) {
+                    insert(oldIds[i], oldSessions[i], oldFlags[i]);
+                }
+            }
+        }
+
+        private void insert(long userId, String sessionId, byte flag) {
+            int mask = userIds.length - 1;
+            int i = slotOf(userId, mask);
+            while (userIds[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            userIds[i] = userId;
+            sessionIds[i] = sessionId;
+            flags[i] = flag;
+        }
+
+        private static int slotOf(long userId, int mask) {
+            long h = userId * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
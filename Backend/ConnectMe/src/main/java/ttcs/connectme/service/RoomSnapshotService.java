@@ -0,0 +1,194 @@
+package ttcs.connectme.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.dto.response.MeetingResponse;
+import ttcs.connectme.dto.response.RoomParticipantResponse;
+import ttcs.connectme.dto.response.RoomSnapshotResponse;
+import ttcs.connectme.dto.response.UserResponse;
+import ttcs.connectme.dto.webrtc.ParticipantState;
+import ttcs.connectme.entity.MeetingEntity;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.enums.ImageVariant;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.mapper.MeetingMapper;
+import ttcs.connectme.mapper.UserMapper;
+import ttcs.connectme.repository.MeetingRepository;
+import ttcs.connectme.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the snapshot a client needs to enter a room: meeting, roster with media flags, room version
+ * and recent chat.
+ * Meeting details and participant profiles are cached per room for a short TTL, the roster itself
+ * comes from the {@link RoomRegistry}, so entering only costs the join write.
+ */
+@Service
+public class RoomSnapshotService {
+    private final MeetingRepository meetingRepository;
+    private final UserRepository userRepository;
+    private final MeetingMapper meetingMapper;
+    private final UserMapper userMapper;
+    private final MeetingUserService meetingUserService;
+    private final RoomRegistry roomRegistry;
+    private final ChatHistoryService chatHistoryService;
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final Map<String, CachedRoom> cache = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public RoomSnapshotService(MeetingRepository meetingRepository,
+                               UserRepository userRepository,
+                               MeetingMapper meetingMapper,
+                               UserMapper userMapper,
+                               MeetingUserService meetingUserService,
+                               RoomRegistry roomRegistry,
+                               ChatHistoryService chatHistoryService,
+                               ImageDerivativeService imageDerivativeService,
+                               @Value("${meeting.snapshot.cache-ttl-ms:60000}") long ttlMillis) {
+        this.meetingRepository = meetingRepository;
+        this.userRepository = userRepository;
+        this.meetingMapper = meetingMapper;
+        this.userMapper = userMapper;
+        this.meetingUserService = meetingUserService;
+        this.roomRegistry = roomRegistry;
+        this.imageDerivativeService = imageDerivativeService;
+        this.chatHistoryService = chatHistoryService;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Join the meeting (idempotent for users already in it) and return the room snapshot.
+     * The participant is registered in the room only with a STOMP session; entering over REST passes
+     * a null sessionId and the client's STOMP enter adds it to the roster.
+     */
+    public RoomSnapshotResponse enter(String meetingCode, Long userId, String sessionId) {
+        if (userId == null) {
+            throw new AppException(ErrorCode.USER_NOT_FOUND);
+        }
+        // The cached lookup doubles as the existence check for the membership write
+        CachedRoom room = room(meetingCode);
+        meetingUserService.enter(meetingCode, userId);
+        if (sessionId != null) {
+            roomRegistry.join(meetingCode, userId, sessionId);
+        }
+
+        return snapshot(meetingCode, room);
+    }
+
+    public RoomSnapshotResponse snapshot(String meetingCode) {
+        return snapshot(meetingCode, room(meetingCode));
+    }
+
+    /**
+     * Drop cached meeting details, e.g. after the meeting was started or ended
+     */
+    public void evict(String meetingCode) {
+        cache.remove(meetingCode);
+    }
+
+    @Scheduled(fixedDelayString = "${meeting.snapshot.cache-ttl-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(room -> room.isExpired(now, ttlMillis));
+    }
+
+    private RoomSnapshotResponse snapshot(String meetingCode, CachedRoom room) {
+        RoomRegistry.RosterSnapshot roster = roomRegistry.snapshot(meetingCode);
+        Map<Long, UserResponse> uncached = loadMissingProfiles(room, roster.participants());
+
+        List<RoomParticipantResponse> participants = new ArrayList<>(roster.participants().size());
+        for (ParticipantState state : roster.participants()) {
+            UserResponse user = room.profiles.getOrDefault(state.getUserId(), uncached.get(state.getUserId()));
+            participants.add(RoomParticipantResponse.builder()
+                    .userId(state.getUserId())
+                    .username(user == null ? null : user.getUsername())
+                    .fullName(user == null ? null : user.getFullName())
+                    // Participant tiles never need more than the tile-sized avatar
+                    .avatar(user == null ? null : ImageDerivativeService.smallestFitting(
+                            user.getAvatarVariants(), ImageVariant.TILE, user.getAvatar()))
+                    .audioEnabled(state.isAudioEnabled())
+                    .videoEnabled(state.isVideoEnabled())
+                    .screenSharing(state.isScreenSharing())
+                    .build());
+        }
+
+        return RoomSnapshotResponse.builder()
+                .meeting(room.meeting)
+                .participants(participants)
+                .version(roster.version())
+                .recentChat(chatHistoryService.recent(meetingCode))
+                .build();
+    }
+
+    private CachedRoom room(String meetingCode) {
+        long now = System.currentTimeMillis();
+        CachedRoom room = cache.get(meetingCode);
+        if (room != null && !room.isExpired(now, ttlMillis)) {
+            return room;
+        }
+
+        MeetingEntity meeting = meetingRepository.findByMeetingCodeAndIsDeletedFalse(meetingCode)
+                .orElseThrow(() -> new AppException(ErrorCode.MEETING_NOT_FOUND));
+        MeetingResponse response = meetingMapper.toResponse(meeting);
+        response.setHostId(meeting.getHost().getId());
+
+        CachedRoom loaded = new CachedRoom(response, now);
+        if (room != null) {
+            // Profiles are still good, only the meeting details are refreshed
+            loaded.profiles.putAll(room.profiles);
+        }
+        cache.put(meetingCode, loaded);
+        return loaded;
+    }
+
+    /**
+     * Fetch profiles of participants not seen in this room yet with a single query.
+     * Profiles whose avatar variants are still being generated are returned instead of cached,
+     * so the next snapshot picks the variants up.
+     */
+    private Map<Long, UserResponse> loadMissingProfiles(CachedRoom room, List<ParticipantState> participants) {
+        List<Long> missing = new ArrayList<>();
+        for (ParticipantState state : participants) {
+            if (!room.profiles.containsKey(state.getUserId())) {
+                missing.add(state.getUserId());
+            }
+        }
+        if (missing.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, UserResponse> uncached = new HashMap<>();
+        userRepository.findAllById(missing).forEach(user -> {
+            UserResponse profile = userMapper.toResponse(user);
+            Map<String, String> variants = imageDerivativeService.variants(user.getAvatar());
+            profile.setAvatarVariants(variants);
+            if (imageDerivativeService.isSettled(user.getAvatar(), variants)) {
+                room.profiles.put(user.getId(), profile);
+            } else {
+                uncached.put(user.getId(), profile);
+            }
+        });
+        return uncached;
+    }
+
+    private static final class CachedRoom {
+        final MeetingResponse meeting;
+        final long loadedAt;
+        final Map<Long, UserResponse> profiles = new ConcurrentHashMap<>();
+
+        CachedRoom(MeetingResponse meeting, long loadedAt) {
+            this.meeting = meeting;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - loadedAt >= ttlMillis;
+        }
+    }
+}
@@ -1,38 +1,281 @@
 package ttcs.connectme.service;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
 public class S3Service {
 
     private final AmazonS3 amazonS3;
+    private final ThreadPoolTaskExecutor partExecutor;
+    private final PartBufferPool bufferPool;
 
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
 
-    public S3Service(AmazonS3 amazonS3) {
+    private final int partSize;
+
+    private final Timer singleUploadTimer;
+    private final Timer multipartUploadTimer;
+    private final DistributionSummary uploadedBytes;
+
+    public S3Service(AmazonS3 amazonS3,
+                     MeterRegistry meterRegistry,
+                     @Value("${aws.s3.multipart.part-size:8388608}") int partSize,
+                     @Value("${aws.s3.multipart.buffers:8}") int buffers,
+                     @Value("${aws.s3.multipart.parallelism:4}") int parallelism) {
         this.amazonS3 = amazonS3;
+        // S3 rejects parts below 5 MB except for the last one
+        this.partSize = Math.max(5 * 1024 * 1024, partSize);
+        this.bufferPool = new PartBufferPool(Math.max(1, buffers), this.partSize);
+
+        this.partExecutor = new ThreadPoolTaskExecutor();
+        this.partExecutor.setCorePoolSize(Math.max(1, parallelism));
+        this.partExecutor.setMaxPoolSize(Math.max(1, parallelism));
+        // Queued parts each hold a pooled buffer, so the queue is bounded by the pool size anyway
+        this.partExecutor.setQueueCapacity(Math.max(1, buffers));
+        this.partExecutor.setThreadNamePrefix("s3-part-");
+        this.partExecutor.initialize();
+
+        this.singleUploadTimer = Timer.builder("storage.upload")
+                .tag("mode", "single")
+                .description("Time to upload one file to S3")
+                .register(meterRegistry);
+        this.multipartUploadTimer = Timer.builder("storage.upload")
+                .tag("mode", "multipart")
+                .description("Time to upload one file to S3")
+                .register(meterRegistry);
+        this.uploadedBytes = DistributionSummary.builder("storage.upload.bytes")
+                .baseUnit("bytes")
+                .description("Size of files uploaded to S3")
+                .register(meterRegistry);
     }
 
     public String uploadFile(MultipartFile file) throws IOException {
-        // Tạo tên file duy nhất (có thể dùng UUID hoặc tên gốc)
-        String fileName = file.getOriginalFilename();
+        return uploadFile(file, null);
+    }
+
+    /**
+     * Upload a file under a meeting-scoped unique key. Files up to one part go in a single streamed PUT,
+     * larger files as a multipart upload whose parts are read into pooled buffers and sent in parallel.
+     */
+    public String uploadFile(MultipartFile file, String meetingCode) throws IOException {
+        String key = meetingKey(meetingCode, file.getOriginalFilename());
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(file.getContentType());
 
-        // Upload file lên S3
-        amazonS3.putObject(new PutObjectRequest(bucketName, fileName, file.getInputStream(), null));
+        long startedAt = System.nanoTime();
+        try (InputStream in = file.getInputStream()) {
+            if (file.getSize() <= partSize) {
+                // With the length known the SDK streams the body instead of buffering it
+                metadata.setContentLength(file.getSize());
+                amazonS3.putObject(new PutObjectRequest(bucketName, key, in, metadata));
+                singleUploadTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            } else {
+                uploadMultipart(key, in, metadata);
+                multipartUploadTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+        uploadedBytes.record(file.getSize());
 
-        // Trả về URL của file vừa upload lên S3
-        return amazonS3.getUrl(bucketName, fileName).toString();
+        return amazonS3.getUrl(bucketName, key).toString();
     }
 
     public S3Object downloadFile(String fileName) {
         // Tải file từ S3
         return amazonS3.getObject(bucketName, fileName);
     }
+
+    /**
+     * Bytes start..end (inclusive) of an object; the body is streamed, the caller must close it
+     */
+    public S3Object downloadRange(String key, long start, long end) {
+        return amazonS3.getObject(new GetObjectRequest(bucketName, key).withRange(start, end));
+    }
+
+    public ObjectMetadata getMetadata(String key) {
+        return amazonS3.getObjectMetadata(bucketName, key);
+    }
+
+    /**
+     * meetings/{meetingCode}/{uuid}/{fileName}; files not tied to a meeting go under meetings/shared
+     */
+    public static String meetingKey(String meetingCode, String fileName) {
+        String scope = meetingCode == null || meetingCode.isBlank() ? "shared" : meetingCode;
+        return "meetings/" + scope + "/" + UUID.randomUUID() + "/" + sanitize(fileName);
+    }
+
+    /**
+     * meetings/{meetingCode}/{uploaderId}/{uuid}/{fileName}, for objects a client uploads itself
+     */
+    public static String uploaderKey(String meetingCode, Long uploaderId, String fileName) {
+        return uploaderPrefix(meetingCode, uploaderId) + UUID.randomUUID() + "/" + sanitize(fileName);
+    }
+
+    public static String uploaderPrefix(String meetingCode, Long uploaderId) {
+        return "meetings/" + meetingCode + "/" + uploaderId + "/";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partExecutor.shutdown();
+    }
+
+    private void uploadMultipart(String key, InputStream in, ObjectMetadata metadata) throws IOException {
+        String uploadId = amazonS3.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+        List<Future<PartETag>> parts = new ArrayList<>();
+        try {
+            for (int partNumber = 1; ; partNumber++) {
+                byte[] buffer = bufferPool.acquire();
+                int length;
+                try {
+                    length = in.readNBytes(buffer, 0, partSize);
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    bufferPool.release(buffer);
+                    break;
+                }
+
+                UploadPartRequest part = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(length)
+                        .withInputStream(new ByteArrayInputStream(buffer, 0, length));
+                parts.add(submit(part, buffer));
+
+                if (length < partSize) {
+                    break;
+                }
+            }
+
+            List<PartETag> etags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                etags.add(part.get());
+            }
+            etags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+        } catch (Exception e) {
+            // Let parts already handed to the executor finish so their buffers go back to the pool
+            awaitQuietly(parts);
+            abort(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw cause instanceof IOException io ? io : new IOException("Multipart upload of " + key + " failed", cause);
+        }
+    }
+
+    private Future<PartETag> submit(UploadPartRequest part, byte[] buffer) {
+        try {
+            return partExecutor.submit(() -> {
+                try {
+                    return amazonS3.uploadPart(part).getPartETag();
+                } finally {
+                    bufferPool.release(buffer);
+                }
+            });
+        } catch (RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+    }
+
+    private static void awaitQuietly(List<Future<PartETag>> parts) {
+        for (Future<PartETag> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (Exception e) {
+            log.warn("Cannot abort multipart upload {} of {}: {}", uploadId, key, e.getMessage());
+        }
+    }
+
+    private static String sanitize(String fileName) {
+        String name = fileName == null ? "file" : fileName.replaceAll("[\\\\/]", "_").trim();
+        name = name.replaceAll("[^\\p{L}\\p{N}._ -]", "_");
+        if (name.isEmpty() || name.startsWith(".")) {
+            name = "file" + name;
+        }
+        return name.length() > 200 ? name.substring(name.length() - 200) : name;
+    }
+
+    /**
+     * Fixed number of part-sized buffers shared by all uploads; allocated on first use and reused.
+     * Taking a buffer blocks while all of them are in flight, which bounds upload memory.
+     */
+    private static final class PartBufferPool {
+        private final Semaphore permits;
+        private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+        private final int bufferSize;
+
+        PartBufferPool(int buffers, int bufferSize) {
+            this.permits = new Semaphore(buffers);
+            this.bufferSize = bufferSize;
+        }
+
+        byte[] acquire() throws IOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for an upload buffer", e);
+            }
+            byte[] buffer = free.poll();
+            return buffer != null ? buffer : new byte[bufferSize];
+        }
+
+        void release(byte[] buffer) {
+            free.offer(buffer);
+            permits.release();
+        }
+    }
 }
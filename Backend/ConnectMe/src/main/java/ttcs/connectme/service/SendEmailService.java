@@ -11,25 +11,26 @@ import org.springframework.stereotype.Service;
 import ttcs.connectme.enums.ErrorCode;
 import ttcs.connectme.exception.AppException;
 
-import java.util.Random;
-
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class SendEmailService {
     JavaMailSender javaMailSender;
+    OtpStore otpStore;
 
-    public String sendOTP(String to) throws Exception {
+    /**
+     * Email a new code to the address; it is only kept server side (see {@link OtpStore})
+     */
+    public void sendOTP(String to) throws Exception {
         MimeMessage message = javaMailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-        String OTP = generateOTP();
+        String OTP = otpStore.issue(to);
 
         helper.setTo(to);
         helper.setSubject("[ConnectMe] Mã xác thực");
         helper.setText("Mã xác thực của bạn là: " + OTP);
 
         javaMailSender.send(message);
-        return OTP;
     }
 
     public void sendReminderEmail(String to, String subject, String body) {
@@ -47,9 +48,4 @@ public class SendEmailService {
             throw new AppException(ErrorCode.SEND_REMINDER_ERROR);
         }
     }
-
-    private String generateOTP() {
-        Random random = new Random();
-        return String.format ("%06d", random.nextInt(1000000));
-    }
 }
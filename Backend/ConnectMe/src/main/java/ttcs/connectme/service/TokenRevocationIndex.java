@@ -0,0 +1,189 @@
+package ttcs.connectme.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ttcs.connectme.entity.InvalidatedTokenEntity;
+import ttcs.connectme.repository.InvalidatedTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of revoked token ids, consulted before invalidated_token.
+ * Revocations are recorded in a Bloom filter per expiry window plus an exact id -> expiry set. A lookup
+ * only checks the window of the token's own exp: a Bloom negative means not revoked, an exact hit means
+ * revoked, and only the remaining Bloom positives (false positives, or ids past the exact set's bound)
+ * query the database. Windows are dropped whole once every token in them has expired.
+ * Expiries are clamped to the longest token lifetime, so a forged far-future exp cannot pin a window.
+ * The index is loaded from every unexpired row at startup; after that each reload only reads rows
+ * inserted since the newest one seen (minus a small overlap for clock skew and late commits). Revocations
+ * made on this instance apply at once, those made on other instances within one reload interval
+ * (token.revocation.reload-interval-ms, 60 s by default).
+ */
+@Slf4j
+@Service
+public class TokenRevocationIndex {
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final long windowMillis;
+    private final int expectedPerWindow;
+    private final double falsePositiveRate;
+    private final int maxExactSize;
+    private final long maxLifetimeMillis;
+    private final long overlapMillis;
+
+    private final Map<Long, BloomFilter<CharSequence>> windows = new ConcurrentHashMap<>();
+    private final Map<String, Long> exact = new ConcurrentHashMap<>();
+    // Insert time the next reload starts from, only touched by load and refresh
+    private Date cursor = new Date(0);
+
+    private final Counter bloomNegatives;
+    private final Counter exactHits;
+    private final Counter databaseChecks;
+
+    public TokenRevocationIndex(InvalidatedTokenRepository invalidatedTokenRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${token.revocation.window-ms:600000}") long windowMillis,
+                                @Value("${token.revocation.expected-per-window:10000}") int expectedPerWindow,
+                                @Value("${token.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${token.revocation.max-exact-size:100000}") int maxExactSize,
+                                @Value("${token.revocation.max-token-lifetime-ms:3600000}") long maxLifetimeMillis,
+                                @Value("${token.revocation.reload-overlap-ms:5000}") long overlapMillis) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.windowMillis = Math.max(1, windowMillis);
+        this.expectedPerWindow = Math.max(1, expectedPerWindow);
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxExactSize = maxExactSize;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.overlapMillis = Math.max(0, overlapMillis);
+
+        this.bloomNegatives = Counter.builder("auth.revocation.checks")
+                .tag("result", "bloom_negative")
+                .description("Revocation checks answered by the index")
+                .register(meterRegistry);
+        this.exactHits = Counter.builder("auth.revocation.checks")
+                .tag("result", "exact_hit")
+                .description("Revocation checks answered by the index")
+                .register(meterRegistry);
+        this.databaseChecks = Counter.builder("auth.revocation.checks")
+                .tag("result", "database")
+                .description("Revocation checks answered by the index")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("auth.revocation.exact.size", Collections.emptyList(), exact);
+        meterRegistry.gaugeMapSize("auth.revocation.windows", Collections.emptyList(), windows);
+    }
+
+    @PostConstruct
+    void load() {
+        Date startedAt = new Date();
+        int loaded = loadAll();
+        cursor = startedAt;
+        log.info("Loaded {} unexpired revoked tokens", loaded);
+    }
+
+    /**
+     * Record a revoked token; the caller has already saved its invalidated_token row
+     */
+    public void revoke(String jti, Date expiryTime) {
+        if (jti == null || expiryTime == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(expiryTime.getTime(), now + maxLifetimeMillis);
+        if (expiresAt <= now) {
+            return;
+        }
+        windows.computeIfAbsent(expiresAt / windowMillis, window -> newFilter()).put(jti);
+        if (exact.size() < maxExactSize) {
+            exact.put(jti, expiresAt);
+        }
+    }
+
+    public boolean isRevoked(String jti, Date expiryTime) {
+        if (jti == null || expiryTime == null) {
+            // Every issued token has both, anything else is not ours
+            return true;
+        }
+        BloomFilter<CharSequence> window = windows.get(expiryTime.getTime() / windowMillis);
+        if (window == null || !window.mightContain(jti)) {
+            bloomNegatives.increment();
+            return false;
+        }
+        if (exact.containsKey(jti)) {
+            exactHits.increment();
+            return true;
+        }
+        databaseChecks.increment();
+        return invalidatedTokenRepository.existsById(jti);
+    }
+
+    /**
+     * Drop expired windows and ids, then merge in revocations recorded since the last reload
+     */
+    @Scheduled(fixedDelayString = "${token.revocation.reload-interval-ms:60000}",
+            initialDelayString = "${token.revocation.reload-interval-ms:60000}")
+    public void refresh() {
+        evictExpired();
+        loadSince();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        // A window holds tokens expiring within [w * windowMillis, (w + 1) * windowMillis)
+        windows.keySet().removeIf(window -> (window + 1) * windowMillis <= now);
+        exact.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private int loadAll() {
+        Date now = new Date();
+        String afterId = "";
+        int loaded = 0;
+        List<InvalidatedTokenEntity> page;
+        do {
+            page = invalidatedTokenRepository.findUnexpired(now, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (InvalidatedTokenEntity token : page) {
+                revoke(token.getId(), token.getExpiryTime());
+                afterId = token.getId();
+            }
+            loaded += page.size();
+        } while (page.size() == LOAD_PAGE_SIZE);
+        return loaded;
+    }
+
+    private void loadSince() {
+        Date now = new Date();
+        Date since = new Date(cursor.getTime() - overlapMillis);
+        Date newest = cursor;
+        String afterId = "";
+        List<InvalidatedTokenEntity> page;
+        do {
+            page = invalidatedTokenRepository.findRevokedSince(now, since, afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (InvalidatedTokenEntity token : page) {
+                revoke(token.getId(), token.getExpiryTime());
+                since = token.getRevokedAt();
+                afterId = token.getId();
+                if (since.after(newest)) {
+                    newest = since;
+                }
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        cursor = newest;
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedPerWindow, falsePositiveRate);
+    }
+}
@@ -2,22 +2,276 @@ package ttcs.connectme.service;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
-import lombok.experimental.FieldDefaults;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ttcs.connectme.dto.response.UploadJobResponse;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.enums.UploadJobStatus;
+import ttcs.connectme.exception.AppException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Uploads to Cloudinary.
+ * The multipart body is first moved to a staging file (Part.write renames the file Tomcat spooled it to
+ * when both are on the same file system, and copies it otherwise) and Cloudinary reads from that file,
+ * so no upload is ever held on the heap as a byte[].
+ * Async uploads run on a bounded pool and return a job id right away; the result can be polled or is
+ * pushed to /user/{userId}/topic/upload.jobs. A full queue is answered with UPLOAD_QUEUE_FULL.
+ * Images also get resized variants (see {@link ImageDerivativeService}) stored next to the original.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
-@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class UploadService {
-    Cloudinary cloudinary;
+    private static final String JOBS_DESTINATION = "/topic/upload.jobs";
 
-    public String uploadFile(MultipartFile file) throws Exception {
-        Map upload = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.asMap());
-        return upload.get("url").toString();
+    private final Cloudinary cloudinary;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ThreadPoolTaskExecutor executor;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    private final Path stagingDir;
+    private final long jobTtlMillis;
+    private final Timer uploadTimer;
+
+    public UploadService(Cloudinary cloudinary,
+                         SimpMessagingTemplate messagingTemplate,
+                         ImageDerivativeService imageDerivativeService,
+                         MeterRegistry meterRegistry,
+                         @Value("${upload.staging-dir:${java.io.tmpdir}}") String stagingDir,
+                         @Value("${upload.parallelism:4}") int parallelism,
+                         @Value("${upload.queue-capacity:32}") int queueCapacity,
+                         @Value("${upload.job-ttl-ms:600000}") long jobTtlMillis) throws IOException {
+        this.cloudinary = cloudinary;
+        this.messagingTemplate = messagingTemplate;
+        this.imageDerivativeService = imageDerivativeService;
+        // Absolute, or Part.write would resolve the staging file against Tomcat's multipart location
+        this.stagingDir = Files.createDirectories(Path.of(stagingDir).toAbsolutePath());
+        this.jobTtlMillis = jobTtlMillis;
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(Math.max(1, parallelism));
+        this.executor.setMaxPoolSize(Math.max(1, parallelism));
+        // Each queued job only holds a staged file, the queue bounds the disk used by waiting uploads
+        this.executor.setQueueCapacity(Math.max(0, queueCapacity));
+        this.executor.setThreadNamePrefix("cloudinary-upload-");
+        this.executor.initialize();
+
+        this.uploadTimer = Timer.builder("media.upload")
+                .description("Time to upload one staged file to Cloudinary")
+                .register(meterRegistry);
+        meterRegistry.gauge("media.upload.queued", executor,
+                e -> e.getThreadPoolExecutor().getQueue().size());
+    }
+
+    /**
+     * Blocking upload from a staging file, returns the public URL
+     */
+    public String uploadFile(MultipartFile file) throws IOException {
+        Path staged = stage(file);
+        try {
+            return upload(staged, file.getContentType());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+    }
+
+    /**
+     * Stage the file on the request thread (the multipart body is gone once the request ends) and
+     * upload it in the background for this user
+     */
+    public UploadJobResponse submit(MultipartFile file, Long userId) {
+        Path staged;
+        try {
+            staged = stage(file);
+        } catch (IOException e) {
+            log.error("Cannot stage upload {}: {}", file.getOriginalFilename(), e.getMessage());
+            throw new AppException(ErrorCode.FILE_UPLOAD_ERROR);
+        }
+
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), userId, file.getOriginalFilename(),
+                file.getContentType(), file.getSize());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, staged));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            deleteQuietly(staged);
+            throw new AppException(ErrorCode.UPLOAD_QUEUE_FULL);
+        }
+        return job.toResponse();
+    }
+
+    /**
+     * A job of this user; other users' jobs are reported as not found
+     */
+    public UploadJobResponse getJob(String jobId, Long userId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId)) {
+            throw new AppException(ErrorCode.UPLOAD_JOB_NOT_FOUND);
+        }
+        return job.toResponse();
+    }
+
+    /**
+     * Forget finished jobs nobody polled for within the TTL
+     */
+    @Scheduled(fixedDelayString = "${upload.job-ttl-ms:600000}")
+    public void evictFinished() {
+        long cutoff = System.currentTimeMillis() - jobTtlMillis;
+        jobs.values().removeIf(job -> job.finishedAt != 0 && job.finishedAt < cutoff);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(UploadJob job, Path staged) {
+        job.status = UploadJobStatus.UPLOADING;
+        try {
+            job.url = upload(staged, job.contentType);
+            job.status = UploadJobStatus.COMPLETED;
+        } catch (Exception e) {
+            log.error("Upload job {} ({}) failed: {}", job.id, job.fileName, e.getMessage());
+            job.error = ErrorCode.FILE_UPLOAD_ERROR.getMessage();
+            job.status = UploadJobStatus.FAILED;
+            deleteQuietly(staged);
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+        publish(job);
+    }
+
+    /**
+     * Upload a staged file and dispose of it: images are handed to the derivative pipeline, which
+     * deletes the file once it has been read, anything else is deleted here. On failure the caller deletes it.
+     */
+    private String upload(Path staged, String contentType) throws IOException {
+        long startedAt = System.nanoTime();
+        Map<?, ?> upload;
+        try {
+            // A File source is streamed by the Cloudinary HTTP client instead of being read into memory
+            upload = cloudinary.uploader().upload(staged.toFile(), ObjectUtils.asMap());
+        } finally {
+            uploadTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+
+        String url = upload.get("url").toString();
+        if (imageDerivativeService.isImage(contentType)) {
+            imageDerivativeService.submit(url, staged, cloudinarySink(upload.get("public_id").toString()), null);
+        } else {
+            deleteQuietly(staged);
+        }
+        return url;
+    }
+
+    /**
+     * Delete the stored variants of an image that is no longer used, e.g. a replaced avatar, in the background
+     */
+    public void removeVariants(String url) {
+        if (url == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> imageDerivativeService.remove(url).forEach(variant -> {
+                try {
+                    cloudinary.uploader().destroy(variant.getStorageKey(), ObjectUtils.emptyMap());
+                } catch (Exception e) {
+                    log.warn("Cannot delete image variant {}: {}", variant.getStorageKey(), e.getMessage());
+                }
+            }));
+        } catch (TaskRejectedException e) {
+            log.warn("Upload queue full, variants of {} are left in place", url);
+        }
+    }
+
+    /**
+     * Variants go next to the original as {publicId}_{variant}
+     */
+    private ImageDerivativeService.Sink cloudinarySink(String publicId) {
+        return (variant, data, format) -> {
+            Map<?, ?> stored = cloudinary.uploader().upload(data, ObjectUtils.asMap(
+                    "public_id", publicId + "_" + variant.key(),
+                    "format", format,
+                    "overwrite", true));
+            return new ImageDerivativeService.Stored(stored.get("public_id").toString(), stored.get("url").toString());
+        };
+    }
+
+    private Path stage(MultipartFile file) throws IOException {
+        Path staged = Files.createTempFile(stagingDir, "upload-", ".part");
+        try {
+            // transferTo(Path) always copies the stream; transferTo(File) goes through Part.write
+            file.transferTo(staged.toFile());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+        return staged;
+    }
+
+    private void publish(UploadJob job) {
+        try {
+            messagingTemplate.convertAndSendToUser(job.userId.toString(), JOBS_DESTINATION, job.toResponse());
+        } catch (Exception e) {
+            log.warn("Cannot notify user {} about upload job {}: {}", job.userId, job.id, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Cannot delete staged upload {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static final class UploadJob {
+        final String id;
+        final Long userId;
+        final String fileName;
+        final String contentType;
+        final long fileSize;
+        volatile UploadJobStatus status = UploadJobStatus.QUEUED;
+        volatile String url;
+        volatile String error;
+        volatile long finishedAt;
+
+        UploadJob(String id, Long userId, String fileName, String contentType, long fileSize) {
+            this.id = id;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.fileSize = fileSize;
+        }
+
+        UploadJobResponse toResponse() {
+            return UploadJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .fileName(fileName)
+                    .fileSize(fileSize)
+                    .url(url)
+                    .error(error)
+                    .build();
+        }
     }
 }
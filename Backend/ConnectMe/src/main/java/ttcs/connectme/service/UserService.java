@@ -1,7 +1,6 @@
 package ttcs.connectme.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import ttcs.connectme.dto.request.ForgotPasswordRequest;
 import ttcs.connectme.dto.request.PasswordUpdateRequest;
@@ -18,13 +17,16 @@ import ttcs.connectme.repository.UserRepository;
 public class UserService {
     private final UserMapper userMapper;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final OtpStore otpStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final UploadService uploadService;
 
     public UserResponse getCurrentUser(Long id) {
         UserEntity user = userRepository.findByIdAndIsDeleted(id, false)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-        return userMapper.toResponse(user);
+        return toResponse(user);
     }
 
     public UserResponse updateUser(Long id, UserUpdateRequest request) {
@@ -41,27 +43,45 @@ public class UserService {
         if (email != null && !email.equals(user.getEmail()) && userRepository.existsByEmailAndIsDeletedFalse(email))
             throw new AppException(ErrorCode.EMAIL_EXISTED);
 
+        String previousAvatar = user.getAvatar();
         userMapper.update(request, user);
         UserEntity updatedUser = userRepository.save(user);
-        return userMapper.toResponse(updatedUser);
+        if (previousAvatar != null && !previousAvatar.equals(updatedUser.getAvatar())) {
+            uploadService.removeVariants(previousAvatar);
+        }
+        return toResponse(updatedUser);
+    }
+
+    private UserResponse toResponse(UserEntity user) {
+        UserResponse response = userMapper.toResponse(user);
+        response.setAvatarVariants(imageDerivativeService.variants(user.getAvatar()));
+        return response;
     }
 
     public void updatePassword(Long id, PasswordUpdateRequest request) {
         UserEntity user = userRepository.findByIdAndIsDeleted(id, false)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-        if (!passwordEncoder.matches(request.getCurrentPassword(), user.getPasswordHash()))
+        if (!PasswordHasher.await(passwordHasher.matches(request.getCurrentPassword(), user.getPasswordHash())))
             throw new AppException(ErrorCode.INCORRECT_PASSWORD);
 
-        user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+        user.setPasswordHash(PasswordHasher.await(passwordHasher.encode(request.getNewPassword())));
         userRepository.save(user);
     }
 
     public void forgotPassword(ForgotPasswordRequest request) {
+        if (!otpStore.verify(request.getEmail(), request.getOtp()))
+            throw new AppException(ErrorCode.INVALID_OTP);
+
         UserEntity user = userRepository.findByEmailAndIsDeletedFalse(request.getEmail())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-        user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+        // Hash before using the code up: a saturated hashing pool (429) leaves the code valid for a retry
+        String hash = PasswordHasher.await(passwordHasher.encode(request.getNewPassword()));
+        if (!otpStore.consume(request.getEmail(), request.getOtp()))
+            throw new AppException(ErrorCode.INVALID_OTP);
+
+        user.setPasswordHash(hash);
         userRepository.save(user);
     }
 }
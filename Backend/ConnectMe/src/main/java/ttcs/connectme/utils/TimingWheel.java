@@ -0,0 +1,93 @@
+package ttcs.connectme.utils;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Two-level hierarchical timing wheel.
+ * Level 0 has one slot per tick, level 1 one slot per full turn of level 0; deadlines further out
+ * are parked in the last level-1 slot and re-checked when it cascades. Adding and expiring an
+ * entry is O(1); each tick only visits the entries of one slot.
+ * Not thread-safe: the owner serialises {@link #add} and {@link #advance}.
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final ArrayDeque<Entry<T>>[] level0;
+    private final ArrayDeque<Entry<T>>[] level1;
+
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = 32 - Integer.numberOfLeadingZeros(Math.max(2, wheelSize) - 1);
+        this.mask = (1 << bits) - 1;
+        this.level0 = new ArrayDeque[1 << bits];
+        this.level1 = new ArrayDeque[1 << bits];
+        for (int i = 0; i <= mask; i++) {
+            level0[i] = new ArrayDeque<>();
+            level1[i] = new ArrayDeque<>();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public void add(T item, long deadlineMillis) {
+        place(new Entry<>(item, Math.max(deadlineMillis / tickMillis, currentTick + 1)));
+        size++;
+    }
+
+    /**
+     * Move the wheel forward to nowMillis, handing every entry whose deadline has passed to expired
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            if ((currentTick & mask) == 0) {
+                cascade();
+            }
+            ArrayDeque<Entry<T>> slot = level0[(int) (currentTick & mask)];
+            for (int n = slot.size(); n > 0; n--) {
+                Entry<T> entry = slot.poll();
+                if (entry.deadlineTick <= currentTick) {
+                    size--;
+                    expired.accept(entry.item);
+                } else {
+                    place(entry);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade() {
+        ArrayDeque<Entry<T>> slot = level1[(int) ((currentTick >>> bits) & mask)];
+        for (int n = slot.size(); n > 0; n--) {
+            place(slot.poll());
+        }
+    }
+
+    private void place(Entry<T> entry) {
+        long ticks = entry.deadlineTick - currentTick;
+        if (ticks <= mask) {
+            level0[(int) (entry.deadlineTick & mask)].add(entry);
+        } else if (ticks <= ((long) mask << bits)) {
+            level1[(int) ((entry.deadlineTick >>> bits) & mask)].add(entry);
+        } else {
+            // Beyond the wheel's span: park in the slot that cascades last and check again then
+            level1[(int) (((currentTick >>> bits) - 1) & mask)].add(entry);
+        }
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,55 @@
+package ttcs.connectme.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets keyed by e.g. IP or email, holding up to capacity tokens and refilling one every
+ * refillMillis. Each bucket is a single "theoretical arrival time" (GCRA): taking a token is one
+ * compare-and-set on it, so checks are lock-free and cost no allocation once a key is known.
+ * Buckets that have refilled completely carry no state and are dropped by {@link #evictIdle}.
+ */
+public class TokenBucketLimiter {
+    private final long refillNanos;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketLimiter(int capacity, long refillMillis) {
+        if (capacity <= 0 || refillMillis <= 0) {
+            throw new IllegalArgumentException("capacity and refillMillis must be positive");
+        }
+        this.refillNanos = refillMillis * 1_000_000;
+        this.burstNanos = (capacity - 1) * refillNanos;
+    }
+
+    /**
+     * Take a token for the key, false if its bucket is empty
+     */
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = arrival.get();
+            long start = current - now < 0 ? now : current;
+            if (start - now > burstNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, start + refillNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop buckets that are full again
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(arrival -> arrival.get() - now <= 0);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -5,15 +5,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import ttcs.connectme.dto.webrtc.UserLeftEvent;
-import ttcs.connectme.service.MeetingService;
+import ttcs.connectme.exception.AppException;
+import ttcs.connectme.service.FileTransferRelay;
 import ttcs.connectme.service.MeetingUserService;
-
-import java.util.Map;
+import ttcs.connectme.service.RoomRegistry;
 
 @Component
 public class WebSocketEventListener {
@@ -26,33 +25,40 @@ public class WebSocketEventListener {
     @Autowired
     private MeetingUserService meetingUserService;
 
+    @Autowired
+    private RoomRegistry roomRegistry;
+
+    @Autowired
+    private FileTransferRelay fileTransferRelay;
+
     /**
      * Handle WebSocket disconnect events
      * This ensures that if a user disconnects unexpectedly, we clean up properly
      */
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
-
-        // Get user session attributes
-        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
-        if (attributes == null) return;
+        // File transfers are tied to the session, not to the meeting the session entered
+        fileTransferRelay.disconnect(event.getSessionId());
 
-        Long userId = (Long) attributes.get("userId");
-        String meetingCode = (String) attributes.get("meetingId");
+        // Resolve the participant from the room registry instead of session attributes
+        RoomRegistry.SessionBinding binding = roomRegistry.removeSession(event.getSessionId());
+        if (binding == null) return;
 
-        if (userId != null && meetingCode != null) {
-            logger.info("User disconnected: {}", userId);
+        Long userId = binding.userId();
+        String meetingCode = binding.meetingCode();
+        logger.info("User disconnected: {}", userId);
 
-            // Remove user from meeting
-            meetingUserService.deleteByMeetingIdAndUserId(meetingCode,
-                    userId);
-
-            // Notify other participants
-            messagingTemplate.convertAndSend(
-                    "/topic/meeting." + meetingCode + ".user.left",
-                    new UserLeftEvent(userId, meetingCode)
-            );
+        // Remove user from meeting
+        try {
+            meetingUserService.deleteByMeetingIdAndUserId(meetingCode, userId);
+        } catch (AppException e) {
+            logger.debug("User {} already left meeting {}", userId, meetingCode);
         }
+
+        // Notify other participants
+        messagingTemplate.convertAndSend(
+                "/topic/meeting." + meetingCode + ".user.left",
+                new UserLeftEvent(userId, meetingCode)
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+-- Optional: range-partition invalidated_token by expiry day, so expired revocations are removed by
+-- dropping a partition instead of deleting rows. Run once, then set token.revocation.purge.partitioned=true;
+-- InvalidatedTokenPurger splits pmax into day partitions (p20250101, ...) and drops days that are over.
+-- MySQL requires the partitioning column in every unique key, hence the composite primary key.
+ALTER TABLE invalidated_token MODIFY expiry_time DATETIME(6) NOT NULL;
+ALTER TABLE invalidated_token DROP PRIMARY KEY, ADD PRIMARY KEY (id, expiry_time);
+ALTER TABLE invalidated_token PARTITION BY RANGE (TO_DAYS(expiry_time)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
@@ -0,0 +1,57 @@
+package ttcs.connectme.configuration;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ttcs.connectme.service.TokenRevocationIndex;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class CustomJwtDecoderTest {
+    private static final String SIGNER_KEY = "0123456789abcdef".repeat(4);
+
+    private final CustomJwtDecoder decoder = new CustomJwtDecoder();
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        ReflectionTestUtils.setField(decoder, "tokenRevocationIndex", mock(TokenRevocationIndex.class));
+        ReflectionTestUtils.setField(decoder, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(decoder, "SIGNER_KEY", SIGNER_KEY);
+        ReflectionTestUtils.setField(decoder, "cacheMaxSize", 100);
+        decoder.init();
+    }
+
+    @Test
+    void acceptsHs512() throws JOSEException {
+        assertEquals("42", decoder.decode(token(JWSAlgorithm.HS512)).getSubject());
+    }
+
+    @Test
+    void rejectsOtherHmacAlgorithmsWithTheSameKey() {
+        assertThrows(BadJwtException.class, () -> decoder.decode(token(JWSAlgorithm.HS256)));
+        assertThrows(BadJwtException.class, () -> decoder.decode(token(JWSAlgorithm.HS384)));
+    }
+
+    private static String token(JWSAlgorithm algorithm) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader(algorithm), new JWTClaimsSet.Builder()
+                .subject("42")
+                .jwtID(UUID.randomUUID().toString())
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build());
+        jwt.sign(new MACSigner(SIGNER_KEY));
+        return jwt.serialize();
+    }
+}
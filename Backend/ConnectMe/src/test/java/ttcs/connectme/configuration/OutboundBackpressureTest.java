@@ -0,0 +1,130 @@
+package ttcs.connectme.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundBackpressureTest {
+    private static final String MEDIA_STATE = "/topic/meeting/abc.media.state";
+
+    private final List<Message<?>> drained = new CopyOnWriteArrayList<>();
+
+    @Test
+    void stashedFrameIsSentWhenTheQueueDrains() throws Exception {
+        OutboundBackpressure backpressure = backpressure();
+        WebSocketSession session = connect(backpressure, "s1");
+
+        Message<?> chat = frame("s1", "/topic/meeting/abc.chat");
+        assertSame(chat, backpressure.preSend(chat, null));
+        Message<?> state = frame("s1", MEDIA_STATE);
+        assertNull(backpressure.preSend(state, null));
+        assertTrue(drained.isEmpty());
+
+        session.sendMessage(new TextMessage("chat"));
+        assertEquals(List.of(state), drained);
+        assertEquals(0, backpressure.queueDepth("s1"));
+    }
+
+    @Test
+    void frameOfferedWhileTheQueueDrainsIsNeverLost() throws Exception {
+        for (int round = 0; round < 2000; round++) {
+            drained.clear();
+            OutboundBackpressure backpressure = backpressure();
+            String sessionId = "s" + round;
+            WebSocketSession session = connect(backpressure, sessionId);
+            backpressure.preSend(frame(sessionId, "/topic/meeting/abc.chat"), null);
+
+            // One thread offers a droppable frame at the soft limit while the writer takes the queue below it
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            AtomicReference<Message<?>> passed = new AtomicReference<>();
+            Message<?> state = frame(sessionId, MEDIA_STATE);
+            Thread sender = new Thread(() -> {
+                await(barrier);
+                passed.set(backpressure.preSend(state, null));
+            });
+            sender.start();
+            await(barrier);
+            session.sendMessage(new TextMessage("chat"));
+            sender.join();
+
+            assertTrue(passed.get() == state || drained.contains(state), "frame lost in round " + round);
+        }
+    }
+
+    @Test
+    void queueDepthIsExportedAsAggregatesOnly() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OutboundBackpressure backpressure = backpressure(meterRegistry);
+        connect(backpressure, "s1");
+        connect(backpressure, "s2");
+        backpressure.preSend(frame("s1", "/topic/meeting/abc.chat"), null);
+        backpressure.preSend(frame("s1", "/topic/meeting/abc.chat"), null);
+        backpressure.preSend(frame("s2", "/topic/meeting/abc.chat"), null);
+
+        assertEquals(2, meterRegistry.get("websocket.outbound.queue.depth.max").gauge().value());
+        assertEquals(3, meterRegistry.get("websocket.outbound.queued").gauge().value());
+        assertTrue(meterRegistry.getMeters().stream().allMatch(meter -> meter.getId().getTag("session") == null));
+    }
+
+    private OutboundBackpressure backpressure() {
+        return backpressure(new SimpleMeterRegistry());
+    }
+
+    private OutboundBackpressure backpressure(SimpleMeterRegistry meterRegistry) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MessageChannel> provider = mock(ObjectProvider.class);
+        MessageChannel channel = (message, timeout) -> drained.add(message);
+        when(provider.getIfAvailable()).thenReturn(channel);
+        return new OutboundBackpressure(provider, meterRegistry, 1, 8, 5000);
+    }
+
+    private static WebSocketSession connect(OutboundBackpressure backpressure, String sessionId) throws Exception {
+        WebSocketSession raw = mock(WebSocketSession.class);
+        when(raw.getId()).thenReturn(sessionId);
+        WebSocketHandler handler = mock(WebSocketHandler.class);
+        backpressure.decorate(handler).afterConnectionEstablished(raw);
+
+        ArgumentCaptor<WebSocketSession> tracked = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(tracked.capture());
+        return tracked.getValue();
+    }
+
+    private static Message<byte[]> frame(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        byte[] payload = "{\"userId\":1,\"mediaType\":\"AUDIO\"}".getBytes(StandardCharsets.UTF_8);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
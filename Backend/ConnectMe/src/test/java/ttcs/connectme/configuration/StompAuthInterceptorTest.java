@@ -0,0 +1,123 @@
+package ttcs.connectme.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import ttcs.connectme.service.MeetingUserService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StompAuthInterceptorTest {
+    private static final String TOKEN = "token";
+
+    private final CustomJwtDecoder decoder = mock(CustomJwtDecoder.class);
+    private final MeetingUserService meetingUserService = mock(MeetingUserService.class);
+    private final StompAuthInterceptor interceptor = new StompAuthInterceptor(decoder, meetingUserService);
+
+    @Test
+    void rejectsConnectWithoutToken() {
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect(new HashMap<>(), null, null), null));
+    }
+
+    @Test
+    void rejectsConnectWithInvalidToken() {
+        when(decoder.decode("forged")).thenThrow(new BadJwtException("bad signature"));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(connect(new HashMap<>(), "forged", null), null));
+    }
+
+    @Test
+    void doesNotBindMeetingTheUserIsNotIn() {
+        when(decoder.decode(TOKEN)).thenReturn(jwt());
+        Map<String, Object> attributes = new HashMap<>();
+
+        interceptor.preSend(connect(attributes, TOKEN, "abc-defg-hij"), null);
+
+        StompHeaderAccessor frame = frame(attributes);
+        assertEquals(42L, StompAuthInterceptor.userId(frame));
+        assertNull(StompAuthInterceptor.meetingCode(frame));
+        assertFalse(StompAuthInterceptor.inMeeting(frame, "abc-defg-hij"));
+    }
+
+    @Test
+    void bindsMeetingOfAParticipant() {
+        when(decoder.decode(TOKEN)).thenReturn(jwt());
+        when(meetingUserService.isMember("abc-defg-hij", 42L)).thenReturn(true);
+        Map<String, Object> attributes = new HashMap<>();
+
+        interceptor.preSend(connect(attributes, TOKEN, "abc-defg-hij"), null);
+
+        StompHeaderAccessor frame = frame(attributes);
+        assertTrue(StompAuthInterceptor.inMeeting(frame, "abc-defg-hij"));
+        assertFalse(StompAuthInterceptor.inMeeting(frame, "xyz-uvwx-rst"));
+    }
+
+    @Test
+    void unboundSessionIsInNoMeeting() {
+        StompHeaderAccessor frame = frame(new HashMap<>());
+        assertFalse(StompAuthInterceptor.inMeeting(frame, "abc-defg-hij"));
+        assertFalse(StompAuthInterceptor.inMeeting(frame, null));
+    }
+
+    @Test
+    void rejectsSubscriptionToAnotherUser() {
+        when(decoder.decode(TOKEN)).thenReturn(jwt());
+        Map<String, Object> attributes = new HashMap<>();
+        StompHeaderAccessor connect = StompHeaderAccessor.wrap(interceptor.preSend(connect(attributes, TOKEN, null), null));
+
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(subscribe(connect, "/user/7/topic/meeting.abc.enter"), null));
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(connect, "/user/42/topic/meeting.abc.enter"), null));
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(connect, "/user/topic/meeting.abc.enter"), null));
+    }
+
+    private static Message<byte[]> connect(Map<String, Object> attributes, String token, String meetingCode) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionAttributes(attributes);
+        if (token != null) {
+            accessor.setNativeHeader("Authorization", "Bearer " + token);
+        }
+        if (meetingCode != null) {
+            accessor.setNativeHeader(StompAuthInterceptor.MEETING_HEADER, meetingCode);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(StompHeaderAccessor connected, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionAttributes(connected.getSessionAttributes());
+        accessor.setUser(connected.getUser());
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static StompHeaderAccessor frame(Map<String, Object> attributes) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionAttributes(attributes);
+        return accessor;
+    }
+
+    private static Jwt jwt() {
+        return Jwt.withTokenValue(TOKEN)
+                .header("alg", "HS512")
+                .subject("42")
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package ttcs.connectme.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StompCodecInterceptorTest {
+
+    @Test
+    void deflateRoundTrips() throws DataFormatException {
+        byte[] sdp = "v=0\r\no=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n".repeat(50).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(sdp, StompCodecInterceptor.inflate(StompCodecInterceptor.deflate(sdp)));
+    }
+
+    @Test
+    void inflateRejectsPayloadsPastTheMessageSizeLimit() {
+        // A few kilobytes of zeros deflate to a tiny frame
+        byte[] bomb = StompCodecInterceptor.deflate(new byte[WebSocketConfig.MESSAGE_SIZE_LIMIT + 1]);
+        assertTrue(bomb.length < 4096);
+        assertThrows(DataFormatException.class, () -> StompCodecInterceptor.inflate(bomb));
+    }
+}
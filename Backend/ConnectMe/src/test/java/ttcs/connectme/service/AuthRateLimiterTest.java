@@ -0,0 +1,88 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.RemoteIpValve;
+import org.apache.catalina.valves.ValveBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatWebServerFactoryCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import ttcs.connectme.enums.ErrorCode;
+import ttcs.connectme.exception.AppException;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AuthRateLimiterTest {
+    private static final String PROXY = "172.18.0.5";
+
+    // One login per IP per minute, accounts effectively unlimited
+    private final AuthRateLimiter limiter = new AuthRateLimiter(new SimpleMeterRegistry(),
+            1, 60_000, 100, 1, 1, 60_000, 100, 1, 1, 60_000, 100, 1);
+
+    private Valve valve;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // The remote IP valve exactly as Spring Boot configures it from application.properties
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new PropertiesPropertySource("application",
+                PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"))));
+        environment.getPropertySources().addFirst(new MapPropertySource("env", Map.of("SERVER_PORT", "8080")));
+        ServerProperties serverProperties = Binder.get(environment).bindOrCreate("server", ServerProperties.class);
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+        new TomcatWebServerFactoryCustomizer(environment, serverProperties).customize(factory);
+
+        valve = assertInstanceOf(RemoteIpValve.class, factory.getEngineValves().stream()
+                .filter(RemoteIpValve.class::isInstance)
+                .findFirst()
+                .orElse(null));
+        valve.setNext(new ValveBase() {
+            @Override
+            public void invoke(Request request, Response response) {
+                limiter.checkLogin(request.getRemoteAddr(), "alice");
+            }
+        });
+    }
+
+    @Test
+    void forwardedClientsGetTheirOwnBuckets() {
+        assertDoesNotThrow(() -> login(PROXY, "203.0.113.7"));
+        assertDoesNotThrow(() -> login(PROXY, "198.51.100.23"));
+
+        AppException e = assertThrows(AppException.class, () -> login(PROXY, "203.0.113.7"));
+        assertEquals(ErrorCode.TOO_MANY_REQUESTS, e.getErrorCode());
+    }
+
+    @Test
+    void forwardedHeaderFromAnUntrustedAddressIsIgnored() {
+        assertDoesNotThrow(() -> login("203.0.113.50", "198.51.100.1"));
+
+        // Another spoofed client from the same address still lands in that address's bucket
+        assertThrows(AppException.class, () -> login("203.0.113.50", "198.51.100.2"));
+    }
+
+    private void login(String remoteAddr, String forwardedFor) throws Exception {
+        Request request = new Request(new Connector());
+        request.setCoyoteRequest(new org.apache.coyote.Request());
+        request.setRemoteAddr(remoteAddr);
+        request.getCoyoteRequest().getMimeHeaders().addValue("X-Forwarded-For").setString(forwardedFor);
+        valve.invoke(request, null);
+    }
+}
@@ -0,0 +1,84 @@
+package ttcs.connectme.service;
+
+import com.amazonaws.services.s3.model.S3Object;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileCacheTest {
+    private static final String KEY = "meetings/abc/1/report.pdf";
+
+    @TempDir
+    Path directory;
+
+    private final S3Service s3Service = mock(S3Service.class);
+
+    @Test
+    void startupRemovesOnlyTheCachesOwnFiles() throws IOException {
+        Path cached = Files.writeString(directory.resolve("a".repeat(64)), "x");
+        Path partial = Files.writeString(directory.resolve("fetch-123.part"), "x");
+        Path foreign = Files.writeString(directory.resolve("notes.txt"), "keep");
+
+        cache();
+
+        assertFalse(Files.exists(cached));
+        assertFalse(Files.exists(partial));
+        assertTrue(Files.exists(foreign));
+    }
+
+    @Test
+    void fetchedObjectIsServedFromDiskAfterwards() throws IOException {
+        FileCache cache = cache();
+        when(s3Service.downloadFile(KEY)).thenAnswer(invocation -> object("hello"));
+
+        Path first = cache.get(KEY, 5);
+        Path second = cache.get(KEY, 5);
+
+        assertEquals(first, second);
+        assertEquals("hello", Files.readString(first));
+        assertEquals(5, cache.size());
+        verify(s3Service, times(1)).downloadFile(KEY);
+    }
+
+    @Test
+    void evictDuringFetchKeepsTheFetchOutOfTheCache() throws IOException {
+        FileCache cache = cache();
+        when(s3Service.downloadFile(KEY)).thenAnswer(invocation -> {
+            // The blob is collected while its bytes are on the way
+            cache.evict(KEY);
+            return object("stale");
+        });
+
+        Path path = cache.get(KEY, 5);
+
+        assertFalse(Files.exists(path));
+        assertEquals(0, cache.size());
+
+        when(s3Service.downloadFile(KEY)).thenAnswer(invocation -> object("fresh"));
+        assertEquals("fresh", Files.readString(cache.get(KEY, 5)));
+        verify(s3Service, times(2)).downloadFile(KEY);
+    }
+
+    private FileCache cache() throws IOException {
+        return new FileCache(s3Service, new SimpleMeterRegistry(), true, directory.toString(), 1024, 1024);
+    }
+
+    private static S3Object object(String content) {
+        S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream(content.getBytes()));
+        return object;
+    }
+}
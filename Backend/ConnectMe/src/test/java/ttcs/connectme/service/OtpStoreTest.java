@@ -0,0 +1,108 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtpStoreTest {
+    private static final String EMAIL = "alice@example.com";
+
+    @Test
+    void verifyLeavesTheCodePendingAndConsumeUsesItUp() {
+        OtpStore store = new OtpStore(new SimpleMeterRegistry(), 60_000, 5);
+        String code = store.issue(EMAIL);
+
+        assertTrue(store.verify(EMAIL, code));
+        assertTrue(store.verify(" Alice@Example.com ", code));
+        assertTrue(store.consume(EMAIL, code));
+        assertFalse(store.consume(EMAIL, code));
+        assertFalse(store.verify(EMAIL, code));
+    }
+
+    @Test
+    void onlyOneConcurrentConsumeSucceeds() throws Exception {
+        OtpStore store = new OtpStore(new SimpleMeterRegistry(), 60_000, 5);
+        String code = store.issue(EMAIL);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return store.consume(EMAIL, code);
+                }));
+            }
+            start.countDown();
+
+            int consumed = 0;
+            for (Future<Boolean> result : results) {
+                consumed += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, consumed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void discardsTheCodeAfterMaxAttemptsWrongGuesses() {
+        OtpStore store = new OtpStore(new SimpleMeterRegistry(), 60_000, 3);
+        String code = store.issue(EMAIL);
+        String wrong = code.equals("000000") ? "000001" : "000000";
+
+        assertFalse(store.verify(EMAIL, wrong));
+        assertFalse(store.consume(EMAIL, wrong));
+        assertTrue(store.verify(EMAIL, code));
+        assertFalse(store.verify(EMAIL, wrong));
+
+        // The right code no longer works once the attempts are spent
+        assertFalse(store.consume(EMAIL, code));
+    }
+
+    @Test
+    void expiresAfterTtl() throws InterruptedException {
+        OtpStore store = new OtpStore(new SimpleMeterRegistry(), 100, 5);
+        String code = store.issue(EMAIL);
+
+        Thread.sleep(150);
+        assertFalse(store.consume(EMAIL, code));
+    }
+
+    @Test
+    void sweepDropsExpiredCodes() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OtpStore store = new OtpStore(meterRegistry, 100, 5);
+        store.issue(EMAIL);
+        store.issue("bob@example.com");
+        assertEquals(2, meterRegistry.get("auth.otp.pending").gauge().value());
+
+        Thread.sleep(150);
+        store.evictExpired();
+        assertEquals(0, meterRegistry.get("auth.otp.pending").gauge().value());
+    }
+
+    @Test
+    void issuingAgainReplacesThePendingCode() {
+        OtpStore store = new OtpStore(new SimpleMeterRegistry(), 60_000, 5);
+        String first = store.issue(EMAIL);
+        String second = store.issue(EMAIL);
+
+        if (!first.equals(second)) {
+            assertFalse(store.verify(EMAIL, first));
+        }
+        assertTrue(store.consume(EMAIL, second));
+    }
+}
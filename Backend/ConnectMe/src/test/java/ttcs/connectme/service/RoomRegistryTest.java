@@ -0,0 +1,155 @@
+package ttcs.connectme.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomRegistryTest {
+
+    @Test
+    void roomFindsEveryEntryAfterRandomPutsAndRemovals() {
+        RoomRegistry.Room room = new RoomRegistry.Room();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int round = 0; round < 20_000; round++) {
+            // Small key space so probe chains collide and wrap around often
+            long userId = 1 + random.nextInt(64);
+            if (random.nextInt(3) == 0) {
+                int slot = room.indexOf(userId);
+                String session = expected.remove(userId);
+                if (session == null) {
+                    assertEquals(-1, slot);
+                } else {
+                    assertEquals(session, room.removeAt(slot));
+                }
+            } else {
+                String session = "s" + round;
+                assertEquals(expected.put(userId, session), room.put(userId, session));
+            }
+
+            assertEquals(expected.size(), room.size());
+        }
+
+        for (long userId = 1; userId <= 64; userId++) {
+            int slot = room.indexOf(userId);
+            if (expected.containsKey(userId)) {
+                assertEquals(expected.get(userId), room.sessionAt(slot));
+            } else {
+                assertEquals(-1, slot);
+            }
+        }
+    }
+
+    @Test
+    void backwardShiftKeepsLaterProbeChainReachable() {
+        RoomRegistry.Room room = new RoomRegistry.Room();
+        for (long userId = 1; userId <= 5; userId++) {
+            room.put(userId, "s" + userId);
+        }
+        // Removing every entry in turn must never strand the ones probed past it
+        for (long userId = 1; userId <= 5; userId++) {
+            room.removeAt(room.indexOf(userId));
+            for (long remaining = userId + 1; remaining <= 5; remaining++) {
+                assertEquals("s" + remaining, room.sessionAt(room.indexOf(remaining)));
+            }
+        }
+        assertTrue(room.isEmpty());
+    }
+
+    @Test
+    void roomGrowsAndKeepsFlags() {
+        RoomRegistry.Room room = new RoomRegistry.Room();
+        for (long userId = 1; userId <= 100; userId++) {
+            room.put(userId, "s" + userId);
+        }
+        room.setFlag(room.indexOf(50), RoomRegistry.SCREEN, true);
+        room.put(101, "s101");
+
+        assertEquals(101, room.size());
+        assertEquals(RoomRegistry.AUDIO | RoomRegistry.VIDEO | RoomRegistry.SCREEN, room.flagAt(room.indexOf(50)));
+    }
+
+    @Test
+    void roomRejectsReservedUserId() {
+        assertThrows(IllegalArgumentException.class, () -> new RoomRegistry.Room().put(0, "s"));
+    }
+
+    @Test
+    void rejoinFromNewSessionDropsOldBinding() {
+        RoomRegistry registry = new RoomRegistry();
+        registry.join("abc", 7, "s1");
+        registry.join("abc", 7, "s2");
+
+        assertNull(registry.removeSession("s1"));
+        assertEquals(new RoomRegistry.SessionBinding("abc", 7), registry.removeSession("s2"));
+        assertEquals(0, registry.size("abc"));
+    }
+
+    @Test
+    void updatesAfterEvictionReportTheRoomMissing() {
+        RoomRegistry registry = new RoomRegistry();
+        registry.join("abc", 7, "s1");
+        registry.evictRoom("abc");
+
+        assertFalse(registry.touch("abc", 7, "s2"));
+        assertFalse(registry.updateMedia("abc", 7, RoomRegistry.SCREEN, true));
+        assertNull(registry.findSession("s1"));
+        assertNull(registry.findSession("s2"));
+    }
+
+    @Test
+    void concurrentJoinAndLeaveLeaveNoStaleBinding() throws Exception {
+        RoomRegistry registry = new RoomRegistry();
+        for (int round = 0; round < 2_000; round++) {
+            String session = "s" + round;
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread leaver = new Thread(() -> {
+                await(barrier);
+                registry.leave("abc", 7);
+            });
+            leaver.start();
+            await(barrier);
+            registry.join("abc", 7, session);
+            leaver.join();
+
+            // Either the join came last and both are present, or the leave did and neither is
+            assertEquals(registry.contains("abc", 7), registry.findSession(session) != null);
+            registry.leave("abc", 7);
+            assertNull(registry.findSession(session));
+        }
+    }
+
+    @Test
+    void versionKeepsIncreasingWhenARoomIsRecreated() {
+        RoomRegistry registry = new RoomRegistry();
+        registry.join("abc", 7, "s1");
+        long first = registry.nextVersion("abc");
+        long second = registry.nextVersion("abc");
+        assertEquals(first + 1, second);
+
+        registry.evictRoom("abc");
+        assertEquals(0, registry.nextVersion("abc"));
+
+        registry.join("abc", 7, "s2");
+        assertTrue(registry.version("abc") > second);
+        assertTrue(registry.nextVersion("abc") > second);
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
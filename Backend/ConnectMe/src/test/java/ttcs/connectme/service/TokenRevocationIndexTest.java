@@ -0,0 +1,121 @@
+package ttcs.connectme.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ttcs.connectme.entity.InvalidatedTokenEntity;
+import ttcs.connectme.repository.InvalidatedTokenRepository;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationIndexTest {
+    private static final long HOUR = 3_600_000;
+
+    private final InvalidatedTokenRepository repository = mock(InvalidatedTokenRepository.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void revokedIdIsAnsweredFromTheExactSet() {
+        TokenRevocationIndex index = index(600_000, 100);
+        Date exp = in(HOUR / 2);
+        index.revoke("a", exp);
+
+        assertTrue(index.isRevoked("a", exp));
+        verify(repository, never()).existsById(anyString());
+        assertEquals(1, count("exact_hit"));
+    }
+
+    @Test
+    void bloomNegativeNeverQueriesTheDatabase() {
+        TokenRevocationIndex index = index(600_000, 100);
+        index.revoke("a", in(HOUR / 2));
+
+        assertFalse(index.isRevoked("b", in(HOUR / 2)));
+        // A window no revoked token expires in
+        assertFalse(index.isRevoked("a", in(HOUR / 2 - 10 * 600_000)));
+        verify(repository, never()).existsById(anyString());
+        assertEquals(2, count("bloom_negative"));
+    }
+
+    @Test
+    void idsBeyondTheExactBoundFallBackToTheDatabase() {
+        TokenRevocationIndex index = index(600_000, 0);
+        Date exp = in(HOUR / 2);
+        index.revoke("a", exp);
+        when(repository.existsById("a")).thenReturn(true);
+
+        assertTrue(index.isRevoked("a", exp));
+        verify(repository).existsById("a");
+        assertEquals(1, count("database"));
+    }
+
+    @Test
+    void expiredWindowsAreDroppedOnRefresh() throws InterruptedException {
+        TokenRevocationIndex index = index(10, 100);
+        Date exp = in(30);
+        index.revoke("a", exp);
+        assertEquals(1.0, meterRegistry.get("auth.revocation.windows").gauge().value());
+
+        Thread.sleep(50);
+        index.refresh();
+
+        assertEquals(0.0, meterRegistry.get("auth.revocation.windows").gauge().value());
+        assertEquals(0.0, meterRegistry.get("auth.revocation.exact.size").gauge().value());
+        assertFalse(index.isRevoked("a", exp));
+    }
+
+    @Test
+    void farFutureExpiriesAreClampedToTheTokenLifetime() {
+        TokenRevocationIndex index = index(600_000, 100);
+        for (int day = 1; day <= 100; day++) {
+            index.revoke("t" + day, in(day * 24 * HOUR));
+        }
+        // Everything lands in the window of now + 1h (or the next one if that boundary was crossed)
+        assertTrue(meterRegistry.get("auth.revocation.windows").gauge().value() <= 2);
+    }
+
+    @Test
+    void refreshOnlyReadsRowsInsertedSinceTheLastReload() {
+        TokenRevocationIndex index = index(600_000, 100);
+        Date exp = in(HOUR / 2);
+        InvalidatedTokenEntity row = InvalidatedTokenEntity.builder()
+                .id("remote")
+                .expiryTime(exp)
+                .revokedAt(new Date())
+                .build();
+        when(repository.findRevokedSince(any(), any(), anyString(), any())).thenReturn(List.of(row));
+
+        index.refresh();
+
+        assertTrue(index.isRevoked("remote", exp));
+        verify(repository, times(1)).findUnexpired(any(), anyString(), any());
+        verify(repository).findRevokedSince(any(), any(), anyString(), any());
+    }
+
+    private TokenRevocationIndex index(long windowMillis, int maxExactSize) {
+        TokenRevocationIndex index = new TokenRevocationIndex(repository, meterRegistry, windowMillis, 1000, 0.01,
+                maxExactSize, HOUR, 5000);
+        index.load();
+        return index;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("auth.revocation.checks").tag("result", result).counter().count();
+    }
+
+    private static Date in(long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+}
@@ -0,0 +1,106 @@
+package ttcs.connectme.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+
+    @Test
+    void expiresOnTheDeadlineTickAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.add("a", 50);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(49, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(50, expired::add);
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 1000);
+        wheel.add("late", 0);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1009, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(1010, expired::add);
+        assertEquals(List.of("late"), expired);
+    }
+
+    @Test
+    void deadlinesOnTheSecondLevelCascadeAtTheirTick() {
+        // 8 slots per level: one turn is 8 ticks, the whole wheel spans 64
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.add(20, 20 * TICK);
+        wheel.add(57, 57 * TICK);
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(19 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(20 * TICK, expired::add);
+        assertEquals(List.of(20), expired);
+        wheel.advance(56 * TICK, expired::add);
+        assertEquals(List.of(20), expired);
+        wheel.advance(57 * TICK, expired::add);
+        assertEquals(List.of(20, 57), expired);
+    }
+
+    @Test
+    void deadlinesBeyondTheSpanSurviveSeveralRounds() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.add(500, 500 * TICK);
+
+        List<Integer> expired = new ArrayList<>();
+        for (long tick = 1; tick < 500; tick++) {
+            wheel.advance(tick * TICK, expired::add);
+        }
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.size());
+        wheel.advance(500 * TICK, expired::add);
+        assertEquals(List.of(500), expired);
+    }
+
+    @Test
+    void randomDeadlinesExpireInTheAdvanceThatReachesThem() {
+        Random random = new Random(7);
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, 0);
+        Map<Integer, Long> deadlineTicks = new HashMap<>();
+        long now = 0;
+        int next = 0;
+
+        for (int round = 0; round < 5000; round++) {
+            for (int n = random.nextInt(4); n > 0; n--) {
+                long deadline = now + random.nextInt(2000);
+                wheel.add(next, deadline);
+                deadlineTicks.put(next++, Math.max(deadline / TICK, now / TICK + 1));
+            }
+
+            long previousTick = now / TICK;
+            now += random.nextInt(120);
+            long currentTick = now / TICK;
+            List<Integer> expired = new ArrayList<>();
+            wheel.advance(now, expired::add);
+
+            for (Integer item : expired) {
+                long due = deadlineTicks.remove(item);
+                assertTrue(due > previousTick && due <= currentTick, "item " + item + " expired off its tick");
+            }
+            for (long due : deadlineTicks.values()) {
+                assertTrue(due > currentTick, "an entry due by tick " + currentTick + " was not expired");
+            }
+            assertEquals(deadlineTicks.size(), wheel.size());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ttcs.connectme.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketLimiterTest {
+
+    @Test
+    void allowsABurstOfCapacityThenRefuses() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(3, 60_000);
+
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 60_000);
+
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("b"));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 100);
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+
+        Thread.sleep(150);
+
+        // One interval gives back one token, not the whole burst
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void evictsOnlyBucketsThatAreFullAgain() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 100);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertEquals(2, limiter.size());
+
+        limiter.evictIdle();
+        assertEquals(2, limiter.size());
+
+        Thread.sleep(150);
+        limiter.evictIdle();
+        assertEquals(0, limiter.size());
+        assertTrue(limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketLimiter(1, 0));
+    }
+}
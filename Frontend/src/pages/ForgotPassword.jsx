@@ -8,7 +8,6 @@ const ForgotPassword = () =>
   const [email, setEmail] = useState("")
   const [otp, setOtp] = useState("")
   const [otpFailed, setOtpFailed] = useState(false)
-  const [serverOtp, setServerOtp] = useState("")
   const [newPassword, setNewPassword] = useState("")
   const [error, setError] = useState("")
   const [loading, setLoading] = useState(false)
@@ -34,7 +33,7 @@ const ForgotPassword = () =>
       }, 1000)
     }
     return () => clearInterval(timerRef.current)
-  }, [step, serverOtp])
+  }, [step])
 
   const handleSendOtp = async (e) => 
   {
@@ -44,8 +43,7 @@ const ForgotPassword = () =>
 
     try 
     {
-      const otpResponse = await authService.sendOtp(email)
-      setServerOtp(otpResponse)
+      await authService.sendOtp(email)
       setStep(2)
     } 
     catch (error) 
@@ -55,22 +53,21 @@ const ForgotPassword = () =>
     setLoading(false)
   }
 
-  const handleVerifyOtp = (e) => 
+  const handleVerifyOtp = async (e) => 
   {
     e.preventDefault()
     setError("")
-    if (otp.trim() === String(serverOtp).trim()) 
+    setLoading(true)
+    try
     {
-      setLoading(true)
-      setTimeout(() =>
-      {
-        setStep(3)
-        setOtpFailed(false)
-        setLoading(false)
-      }, 1000)
+      await authService.verifyOtp(email, otp.trim())
+      setStep(3)
+      setOtpFailed(false)
+      setLoading(false)
     }
-    else
+    catch (error)
     {
+      setLoading(false)
       setError("Mã OTP không đúng.")
       setOtpFailed(true)
       setCountdown(0)
@@ -93,7 +90,7 @@ const ForgotPassword = () =>
 
     try 
     {
-      await authService.forgotPassword(email, newPassword)
+      await authService.forgotPassword(email, otp.trim(), newPassword)
       setStep(4)
     } 
     catch (error) 
@@ -110,8 +107,7 @@ const ForgotPassword = () =>
 
     try 
     {
-      const otpResponse = await authService.sendOtp(email)
-      setServerOtp(otpResponse)
+      await authService.sendOtp(email)
       setOtp("")
       setCountdown(300)
       setOtpFailed(false)
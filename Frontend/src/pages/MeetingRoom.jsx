@@ -206,6 +206,7 @@ const MeetingRoom = () => {
         onRemoteStreamAdded: handleRemoteStreamAdded,
         onMessageReceived: handleMessageReceived,
         onFileReceived: handleFileReceived,
+        onFileVariants: handleFileVariants,
         onParticipantAudioToggle: handleParticipantAudioToggle,
         onParticipantVideoToggle: handleParticipantVideoToggle,
         onError: handleWebRTCError,
@@ -706,6 +707,16 @@ const MeetingRoom = () => {
     }
   }
 
+  const handleFileVariants = ({ fileId, previewUrl, variants }) => {
+    setChatMessages(prev =>
+      prev.map(m =>
+        m.type === "file" && m.fileData?.fileId === fileId
+          ? { ...m, fileData: { ...m.fileData, previewUrl, variants } }
+          : m
+      )
+    )
+  }
+
   // Handle participant audio toggle
   const handleParticipantAudioToggle = (userId, enabled) => {
     setParticipants(prev =>
@@ -1477,11 +1488,20 @@ const MeetingRoom = () => {
                       >
                         {message.type === "file" ? (
                           <div className="flex items-center gap-2">
-                            <FileText size={16} />
+                            {message.fileData?.previewUrl ? (
+                              <img
+                                src={message.fileData.previewUrl}
+                                alt={message.fileData.fileName}
+                                className="max-h-32 max-w-[12rem] rounded object-contain"
+                                loading="lazy"
+                              />
+                            ) : (
+                              <FileText size={16} />
+                            )}
                             <span className="text-sm">{message.text}</span>
                             {message.fileData && message.fileData.downloadUrl ? (
                               <button
-                                onClick={() => window.open(message.fileData.downloadUrl, '_blank')}
+                                onClick={() => window.open(webrtcService.fileUrl(message.fileData), '_blank')}
                                 className="p-1 hover:bg-background/20 rounded"
                                 title={`Download ${message.fileData.fileName || 'file'}`}
                               >
@@ -45,6 +45,8 @@ export const api = {
   post: (url, data, config = {}) => axiosInstance.post(url, data, config),
   put: (url, data, config = {}) => axiosInstance.put(url, data, config),
   delete: (url, config = {}) => axiosInstance.delete(url, config),
+  // Absolute URL of an API path, for links the browser opens itself (cookies carry the auth)
+  url: (path) => `${axiosInstance.defaults.baseURL}${path}`,
   setAuthToken: (token) => {
     if (token) {
       axiosInstance.defaults.headers.common.Authorization = `Bearer ${token}`
@@ -44,11 +44,24 @@ export const authService = {
     }
   },
 
-  forgotPassword: async (email, newPassword) =>
+  // The code is checked server side; it stays valid for forgotPassword
+  verifyOtp: async (email, otp) =>
   {
     try
     {
-      await api.put("/api/users/me/forgot-password", {email, newPassword})
+      await api.post("/api/auth/verifyOTP", {email, otp})
+    }
+    catch (error)
+    {
+      throw error
+    }
+  },
+
+  forgotPassword: async (email, otp, newPassword) =>
+  {
+    try
+    {
+      await api.put("/api/users/me/forgot-password", {email, otp, newPassword})
     }
     catch (error)
     {
@@ -76,6 +76,31 @@ export const meetingService = {
   },
 
   // Join a meeting
+  // Join a meeting and get meeting, participants with media state and room version in one request
+  enterMeeting: async (meetingCode) => {
+    try {
+      // The backend enters the user the session cookie belongs to
+      const response = await api.post(`/api/meetings/${meetingCode}/enter`)
+      return response.data
+    } catch (error) {
+      console.error("Error entering meeting:", error)
+      throw error
+    }
+  },
+
+  // Get chat history; pass the previous response's nextCursor to load older messages
+  getChatHistory: async (meetingCode, before = null) => {
+    try {
+      const response = await api.get(`/api/meetings/${meetingCode}/chat`, {
+        params: before ? { before } : {}
+      })
+      return response.data
+    } catch (error) {
+      console.error("Error fetching chat history:", error)
+      throw error
+    }
+  },
+
   joinMeeting: async (meetingCode, displayName) => {
     try {
       const userId = await getCurrentUserId()
@@ -22,5 +22,27 @@ export const uploadService =
         {
             throw error;
         }
+    },
+
+    // Returns { jobId, status } right away; the URL arrives via getUploadJob or /user/topic/upload.jobs
+    uploadImageAsync: async (file) =>
+    {
+        const formData = new FormData()
+        formData.append("file", file)
+        const response = await api.post("/api/upload/async", formData,
+            {
+                headers:
+                {
+                    "Content-Type": "multipart/form-data",
+                }
+            }
+        )
+        return response.data;
+    },
+
+    getUploadJob: async (jobId) =>
+    {
+        const response = await api.get(`/api/upload/jobs/${jobId}`)
+        return response.data;
     }
 }
@@ -1,6 +1,10 @@
 import SockJS from "sockjs-client"
 import { Client } from "@stomp/stompjs"
 import { saveAs } from "file-saver"
+import { api } from "./api"
+
+// Files above this are uploaded without hashing, reading them into memory would cost more than it saves
+const MAX_HASHED_FILE_SIZE = 256 * 1024 * 1024
 
 class WebRTCService {
   constructor() {
@@ -14,12 +18,14 @@ class WebRTCService {
     this.pendingCandidates = {}
     this.remoteStreams = {} // Store remote streams by user ID
     this.isConnecting = false
+    this.mediaStateVersion = 0
     this.callbacks = {
       onParticipantJoined: null,
       onParticipantLeft: null,
       onRemoteStreamAdded: null,
       onMessageReceived: null,
       onFileReceived: null,
+      onFileVariants: null,
       onError: null,
       onParticipantAudioToggle: null,
       onParticipantVideoToggle: null,
@@ -101,6 +107,8 @@ class WebRTCService {
 
     this.stompClient = new Client({
       webSocketFactory: () => socket,
+      // The session is authenticated from the jwt cookie sent with the handshake
+      connectHeaders: { "x-meeting-code": meetingCode },
       debug: (str) => {
         if (import.meta.env.DEV) {
           console.debug(str);
@@ -195,12 +203,19 @@ class WebRTCService {
     // Subscribe to user left events
     this.stompClient.subscribe(`/topic/meeting.${meetingCode}.user.left`, (message) => {
       const data = JSON.parse(message.body)
-      console.log("User left:", data.userId)
+      // Participants that timed out together arrive as one event with userIds
+      const events = Array.isArray(data.userIds)
+        ? data.userIds.map((id) => ({ userId: id, meetingCode: data.meetingCode }))
+        : [data]
 
-      this.closePeerConnection(data.userId)
-      if (this.callbacks.onParticipantLeft) {
-        this.callbacks.onParticipantLeft(data)
-      }
+      events.forEach((event) => {
+        console.log("User left:", event.userId)
+
+        this.closePeerConnection(event.userId)
+        if (this.callbacks.onParticipantLeft) {
+          this.callbacks.onParticipantLeft(event)
+        }
+      })
     })
 
     // Subscribe to signaling messages
@@ -235,6 +250,12 @@ class WebRTCService {
           console.log("Processing ICE candidate from user:", data.from)
           const candidate = JSON.parse(data.payload)
           await this.addIceCandidate(data.from, candidate)
+        } else if (data.type === "ice-candidates") {
+          // Server coalesces trickle-ICE candidates into one frame
+          console.log("Processing", data.payloads.length, "ICE candidates from user:", data.from)
+          for (const payload of data.payloads) {
+            await this.addIceCandidate(data.from, JSON.parse(payload))
+          }
         } else {
           console.warn("Unknown signal type:", data.type)
         }
@@ -259,10 +280,22 @@ class WebRTCService {
       }
     })
 
+    // Resized copies of a shared image become available after it was announced
+    this.stompClient.subscribe(`/topic/meeting.${meetingCode}.file.variants`, (message) => {
+      const data = JSON.parse(message.body)
+      if (this.callbacks.onFileVariants) {
+        this.callbacks.onFileVariants(data)
+      }
+    })
+
     // Subscribe to media state updates
     this.stompClient.subscribe(`/topic/meeting.${meetingCode}.media.state`, (message) => {
       const data = JSON.parse(message.body)
       console.log(data);
+      if (Array.isArray(data.changes)) {
+        this.applyMediaStateDelta(data, userId, meetingCode)
+        return
+      }
       if (data.userId !== userId) {
         if (data.mediaType === "audio") {
           if (this.callbacks.onParticipantAudioToggle) {
@@ -277,6 +310,43 @@ class WebRTCService {
     })
   }
 
+  // Apply a coalesced media state delta, re-reading the roster if a version was missed
+  applyMediaStateDelta(delta, userId, meetingCode) {
+    const lastVersion = this.mediaStateVersion
+    if (lastVersion && delta.version <= lastVersion) {
+      return
+    }
+    this.mediaStateVersion = delta.version
+    if (lastVersion && delta.version > lastVersion + 1) {
+      console.warn(`Missed media state versions ${lastVersion + 1}..${delta.version - 1}, resyncing roster`)
+      this.resyncMediaState(userId, meetingCode)
+      return
+    }
+    delta.changes.forEach((change) => this.applyMediaStateChange(change, userId))
+  }
+
+  applyMediaStateChange(change, userId) {
+    if (change.userId === userId) {
+      return
+    }
+    if (change.audioEnabled !== undefined && this.callbacks.onParticipantAudioToggle) {
+      this.callbacks.onParticipantAudioToggle(change.userId, change.audioEnabled)
+    }
+    if (change.videoEnabled !== undefined && this.callbacks.onParticipantVideoToggle) {
+      this.callbacks.onParticipantVideoToggle(change.userId, change.videoEnabled)
+    }
+  }
+
+  async resyncMediaState(userId, meetingCode) {
+    try {
+      const response = await api.get(`/api/meetings/${meetingCode}/online`)
+      const roster = response.data?.result || []
+      roster.forEach((participant) => this.applyMediaStateChange(participant, userId))
+    } catch (error) {
+      console.error("Error resyncing media state:", error)
+    }
+  }
+
   // Create a new peer connection for a user
   async createPeerConnection(userId) {
     try {
@@ -1067,55 +1137,66 @@ class WebRTCService {
           return;
         }
 
-        const formData = new FormData();
-        formData.append("file", file);
-        console.log("231321==============metadata", metadata)
-        let fileUrl;
+        // Upload straight to storage with a presigned URL; the server only records the file
+        // and announces it on file.shared once the upload is complete
+        let fileNotification;
         try {
-          console.log(`Uploading file ${file.name} to /api/upload/file`);
-          const response = await fetch('/api/upload/file', {
-            method: 'POST',
-            body: formData,
+          // Content this user already shared is shared again by hash without uploading it
+          const sha256 = await this.hashFile(file);
+          if (sha256) {
+            try {
+              const shared = await api.post("/api/files/share-by-hash", {
+                meetingCode: this.meetingCode,
+                sha256,
+                fileName: file.name,
+                contentType: file.type || "application/octet-stream",
+                senderName: metadata.senderName || "Unknown"
+              });
+              resolve(shared.data.result);
+              return;
+            } catch (hashError) {
+              if (hashError.response?.status !== 404) {
+                throw hashError;
+              }
+            }
+          }
+
+          const intent = await api.post("/api/files/upload-intent", {
+            meetingCode: this.meetingCode,
+            fileName: file.name,
+            contentType: file.type || "application/octet-stream",
+            fileSize: file.size,
+            sha256
           });
+          const { key, uploadUrl, contentType, checksumSha256 } = intent.data.result;
 
-          if (!response.ok) {
-            const errorText = await response.text();
-            console.error("S3 Upload API Error:", response.status, errorText);
-            throw new Error(`Upload to S3 failed: ${response.status} ${errorText}`);
+          // The URL is signed with the checksum header, storage verifies the bytes against it
+          const headers = { "Content-Type": contentType };
+          if (checksumSha256) {
+            headers["x-amz-checksum-sha256"] = checksumSha256;
           }
-
-          const responseText = await response.text();
-          if (responseText.startsWith("File uploaded successfully: ")) {
-            fileUrl = responseText.substring("File uploaded successfully: ".length).trim();
-            console.log("File uploaded to S3, URL:", fileUrl);
-          } else {
-            console.error("Unexpected response from S3 upload API:", responseText);
-            throw new Error("Unexpected response format from S3 upload API");
+          const upload = await fetch(uploadUrl, {
+            method: "PUT",
+            headers,
+            body: file
+          });
+          if (!upload.ok) {
+            throw new Error(`Upload to storage failed: ${upload.status}`);
           }
+
+          const completed = await api.post("/api/files/complete", {
+            meetingCode: this.meetingCode,
+            key,
+            senderName: metadata.senderName || "Unknown"
+          });
+          fileNotification = completed.data.result;
+          console.log("File shared:", fileNotification);
         } catch (uploadError) {
-          console.error("Error during S3 upload:", uploadError);
+          console.error("Error during file upload:", uploadError);
           reject(uploadError);
           return;
         }
 
-        const fileNotification = {
-          fileId: `${this.userId}-${Date.now()}`, 
-          fileName: file.name,
-          fileType: file.type,
-          fileSize: file.size,
-          downloadUrl: fileUrl, 
-          meetingCode: this.meetingCode,
-          senderId: this.userId,
-          senderName: metadata.senderName || "Unknown",
-          timestamp: new Date().toISOString()
-        };
-
-        console.log("Publishing file shared notification:", fileNotification);
-        this.stompClient.publish({
-          destination: "/app/meeting.file.shared",
-          body: JSON.stringify(fileNotification)
-        });
-
         resolve(fileNotification);
 
       } catch (error) {
@@ -1125,6 +1206,20 @@ class WebRTCService {
     });
   }
 
+  // Lowercase hex SHA-256 of a file, or null when it cannot be hashed in the browser
+  async hashFile(file) {
+    if (!window.crypto?.subtle || file.size > MAX_HASHED_FILE_SIZE) {
+      return null;
+    }
+    const digest = await window.crypto.subtle.digest("SHA-256", await file.arrayBuffer());
+    return Array.from(new Uint8Array(digest), (b) => b.toString(16).padStart(2, "0")).join("");
+  }
+
+  // Shared files are streamed by the backend (ranges, caching); the storage URL is only a fallback
+  fileUrl(fileData) {
+    return fileData.fileId ? api.url(`/api/files/${fileData.fileId}`) : fileData.downloadUrl
+  }
+
   // Download a received file
   downloadFile(fileData) {
     try {
@@ -1214,6 +1309,7 @@ class WebRTCService {
 
       // Đặt lại trạng thái tham gia cuộc họp
       this.hasJoinedMeeting = false;
+      this.mediaStateVersion = 0;
 
       // Ngắt kết nối STOMP client
       this.stompClient.deactivate();